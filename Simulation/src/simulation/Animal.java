@@ -1,11 +1,5 @@
 package simulation;
 
-import javafx.animation.TranslateTransition;
-import javafx.scene.image.Image;
-import javafx.util.Duration;
-
-import java.util.ArrayList;
-
 /**
  * This class represents an Animal.
  *
@@ -17,13 +11,6 @@ public class Animal extends Entity{
     private final Class<?> food;
     // The food at current position, if any.
     private Entity currentFood;
-    // The animal's age.
-    private int age;
-    // The image of the adult animal.
-    private final Image adult;
-
-    //this handles smooth movement from one tile to the next.
-    private final TranslateTransition mover;
 
     /**
      * Constructor for the Animal class.
@@ -34,18 +21,22 @@ public class Animal extends Entity{
      * @param health  The health of the animal.
      * @param age   The age of the animal.
      * @param food  The food the animal eats.
-     * @param adult The image of the adult animal.
-     * @param baby  The image of the baby animal.
      */
-    public Animal(World world, int x, int y, int health, int age, Class<?> food, Image adult, Image baby) {
-        // Use different images based on the age of the animal.
-        super(world, x, y, health, age >= 10 ? adult : baby);
-        this.age = age;
+    public Animal(World world, int x, int y, int health, int age, Class<?> food) {
+        super(world, x, y, health, age);
         this.food = food;
-        this.adult = adult;
+    }
 
-        mover = new TranslateTransition(Duration.millis(500), getImageView());
-        mover.setCycleCount(1);
+    /**
+     * Creates the handle of an animal that is already in the World, e.g. one loaded from a checkpoint.
+     *
+     * @param world The world in which the animal lives.
+     * @param slot The slot the animal lives in.
+     * @param food  The food the animal eats.
+     */
+    Animal(World world, int slot, Class<?> food) {
+        super(world, slot);
+        this.food = food;
     }
 
     /**
@@ -53,52 +44,86 @@ public class Animal extends Entity{
      *
      * @param grid available locations
      */
-    public void wander(boolean[][] grid) {
+    public void wander(OccupancyGrid grid) {
         //TODO implement wander behaviour
+        TickProfiler profiler = getWorld().getProfiler();
+        long start = profiler == null ? 0 : System.nanoTime();
+        int target = pickWanderTarget(grid, getWorld().getRandom());
+        if(target < 0){
+            // if we have tried more than 10 times and still haven't found a valid location just kill the animal
+            destroy(DeathCause.STUCK);
+        }else{
+            // if we have found a valid location, move there
+            moveTo(getWorld().cellX(target), getWorld().cellY(target));
+            // each time the animal wanders, it loses some health, 10 by default
+            decreaseHealth(getWorld().getConfig().getWanderCost());
+        }
+        if(profiler != null){
+            profiler.record(TickProfiler.Phase.WANDER, start);
+        }
+    }
+
+    /**
+     * Picks where to wander to, without moving there yet.
+     *
+     * @param grid available locations
+     * @param random the random numbers to use
+     * @return the cell to move to (see World.toCell), -1 if no valid location was found within 10 tries
+     */
+    public int pickWanderTarget(OccupancyGrid grid, Randomizer random) {
         int x = getX();
         int y = getY();
         int newx = x; // new x coordinate
         int newy = y; // new y coordinate
+        // the neighbours that are inside the world, have no fence and are not taken
+        int cell = getWorld().toCell(x, y);
+        int free = grid.freeNeighbours(cell, getWorld().getNavigation().getMask(cell));
+        boolean stay = !grid.isOccupied(cell);
+        if(free == 0 && !stay){
+            // every try would fail
+            return -1;
+        }
+        boolean valid = true;
         int t = 0; // number of tries
         do {
-            switch (Simulator.getRandomInt(0, 5)) {
+            switch (random.getRandomInt(0, 5)) {
                 case 0:
                     // move down
                     newx = x + 1;
                     newy = y;
+                    valid = (free & NavigationGrid.DOWN) != 0;
                     break;
                 case 1:
                     // move right
                     newx = x;
                     newy = y + 1;
+                    valid = (free & NavigationGrid.RIGHT) != 0;
                     break;
                 case 2:
                     // move up
                     newx = x - 1;
                     newy = y;
+                    valid = (free & NavigationGrid.UP) != 0;
                     break;
                 case 3:
                     // move left
                     newx = x;
                     newy = y - 1;
+                    valid = (free & NavigationGrid.LEFT) != 0;
                     break;
                 case 4:
                     // stay put
                     newx = x;
                     newy = y;
+                    valid = stay;
                     break;
             }
             t++;
             if(t>10){
-                // if we have tried more than 10 times and still haven't found a valid location just kill the animal
-                destroy();
-                return;
+                return -1;
             }
-        }while(!getWorld().isValidLocation(newx, newy) || grid[newx][newy]);
-        // if we have found a valid location, move there
-        moveTo(newx, newy);
-        // each time the animal wanders, it loses 10 health
-        decreaseHealth(10);
+        }while(!valid);
+        return getWorld().toCell(newx, newy);
     }
 
     /**
@@ -109,7 +134,8 @@ public class Animal extends Entity{
     public void eat(Entity e) {
         //TODO implement eat behaviour
         increaseHealth(e.getHealth());
-        e.destroy();
+        getWorld().ate(this, e);
+        e.destroy(DeathCause.EATEN);
     }
 
     /**
@@ -121,8 +147,18 @@ public class Animal extends Entity{
         return getHealth() > 0;
     }
 
+    /**
+     * Check if the animal has enough health to just wander around, more than 50 by default
+     */
     public boolean isHealthy() {
-        return getHealth() > 50;
+        return getHealth() > getWorld().getConfig().getHealthyAbove();
+    }
+
+    /**
+     * Check if the animal is old enough to breed, 10 by default
+     */
+    public boolean isAdult() {
+        return getAge() >= getWorld().getConfig().getAdultAge();
     }
 
     /**
@@ -130,44 +166,58 @@ public class Animal extends Entity{
      *
      * @param grid unoccupied locations
      */
-    public void seekFood(boolean[][] grid) {
+    public void seekFood(OccupancyGrid grid) {
         //TODO implement seekFood behaviour
+        TickProfiler profiler = getWorld().getProfiler();
+        long start = profiler == null ? 0 : System.nanoTime();
+        int target = pickFoodStep(grid);
+        //if we find a food, move towards it, otherwise keep wandering
+        if(target < 0){
+            wander(grid);
+        }else{
+            moveTo(getWorld().cellX(target), getWorld().cellY(target));
+            // each time the animal seeks for food, it loses some health, 5 by default
+            decreaseHealth(getWorld().getConfig().getSeekCost());
+        }
+        if(profiler != null){
+            profiler.record(TickProfiler.Phase.SEEK_FOOD, start);
+        }
+    }
+
+    /**
+     * Picks the step towards the closest food, without taking it yet. If the World keeps food fields, the
+     * step follows the FoodField of this animal's food instead.
+     *
+     * @param grid unoccupied locations
+     * @return the cell to move to (see World.toCell), -1 if there is no food or the way is blocked
+     */
+    public int pickFoodStep(OccupancyGrid grid) {
         int x = getX();
         int y = getY();
-        ArrayList<Entity> foods = getWorld().getEntities(food);
-        //find the closest food
-        Entity closest = null;
-        int dist = Integer.MAX_VALUE;
-        for(Entity f : foods){
-            int d = Math.abs(f.getX()-x) + Math.abs(f.getY()-y);
-            if(!grid[f.getX()][f.getY()] && d <= dist){
-                dist = d;
-                closest = f;
-            }
+        FoodField field = getWorld().getFoodField(food);
+        if(field != null){
+            //walk downhill on the food field, around any fences in the way
+            return field.step(getWorld().toCell(x, y), grid);
         }
-        //if we find a food, move towards it, otherwise keep wandering
-        if(closest != null){
-            int dx = 0, dy = 0;
-            // dx: unit vector in vertical direction
-            // dy: unit vector in horizontal direction
-            if(closest.getX()-x != 0)
-                dx = (closest.getX()-x)/Math.abs(closest.getX()-x);
-            if(closest.getY()-y != 0)
-                dy = (closest.getY()-y)/Math.abs(closest.getY()-y);
-            // tries to move towards the closest food, if it's blocked by fence or another animal, it will wander
-            if(dx!=0 && !grid[x+dx][y] && getWorld().isValidLocation(x+dx, y))
-                moveTo(x+dx, y);
-            else if(dy!=0 && !grid[x][y+dy] && getWorld().isValidLocation(x, y+dy))
-                moveTo(x, y+dy);
-            else {
-                wander(grid);
-                return;
-            }
-            // each time the animal seeks for food, it loses 5 health
-            decreaseHealth(5);
-        }else{
-            wander(grid);
+        //find the closest food that nobody else has claimed
+        Entity closest = getWorld().findNearest(x, y, food, grid);
+        if(closest == null){
+            return -1;
         }
+        int dx = 0, dy = 0;
+        // dx: unit vector in vertical direction
+        // dy: unit vector in horizontal direction
+        if(closest.getX()-x != 0)
+            dx = (closest.getX()-x)/Math.abs(closest.getX()-x);
+        if(closest.getY()-y != 0)
+            dy = (closest.getY()-y)/Math.abs(closest.getY()-y);
+        // tries to move towards the closest food, if it's blocked by fence or another animal, it will wander
+        int passable = getWorld().getNavigation().getMask(getWorld().toCell(x, y));
+        if(dx!=0 && (passable & (dx > 0 ? NavigationGrid.DOWN : NavigationGrid.UP)) != 0 && !grid.isOccupied(x+dx, y))
+            return getWorld().toCell(x+dx, y);
+        else if(dy!=0 && (passable & (dy > 0 ? NavigationGrid.RIGHT : NavigationGrid.LEFT)) != 0 && !grid.isOccupied(x, y+dy))
+            return getWorld().toCell(x, y+dy);
+        return -1;
     }
 
     /**
@@ -175,13 +225,13 @@ public class Animal extends Entity{
      *
      * @param grid unoccupied locations
      */
-    public void act(boolean[][] grid) {
+    public void act(OccupancyGrid grid) {
         if(isOnFood()){
             //System.out.println(this + " just ate " + currentFood);
             //if it's on food, it eats the food
             eat(currentFood);
-            //reproduce only if it's at least 10 years old
-            if(age >= 10)
+            //reproduce only if it's an adult
+            if(isAdult())
                 breed();
             //TODO add health
         }else{
@@ -195,24 +245,35 @@ public class Animal extends Entity{
             //TODO maybe seek out grass?
             //TODO prevent sheep from wandering off the world.
         }
+        endTurn(grid);
+    }
 
+    /**
+     * The end of the animal's turn: it might die of starvation or old age, otherwise it grows older
+     * and takes its place in the grid.
+     *
+     * @param grid unoccupied locations
+     */
+    public void endTurn(OccupancyGrid grid) {
+        // it might have died while wandering
+        if(isDead()){
+            return;
+        }
         // if the health of the animal drops below 0, it dies of starvation
         if(!isAlive()){
-            destroy();
-            System.out.println(this+ " died of starvation");
+            destroy(DeathCause.STARVATION);
             return;
         }
-        // grow older every time they act, and if they grow older than 20, they die of old age
-        age++;
-        if(age > 20){
-            destroy();
-            System.out.println(this+ " died of old age");
+        // grow older every time they act, and if they grow older than the maximum age (20 by default), they die of old age
+        increaseAge();
+        if(getAge() > getWorld().getConfig().getMaxAge()){
+            destroy(DeathCause.OLD_AGE);
             return;
         }
-        grid[getX()][getY()] = true;
-        // if the baby reaches age 10, it becomes an adult
-        if(age == 10){
-            setImage(adult);
+        grid.occupy(getX(), getY());
+        // if the baby reaches the adult age, it becomes an adult
+        if(getAge() == getWorld().getConfig().getAdultAge()){
+            getWorld().changed(this);
         }
     }
 
@@ -220,38 +281,47 @@ public class Animal extends Entity{
      * check if the animal is on food
      */
     public boolean isOnFood(){
+        TickProfiler profiler = getWorld().getProfiler();
+        if(profiler != null){
+            profiler.count(TickProfiler.Counter.FOOD_CHECKS);
+        }
         currentFood = getWorld().getOneEntityAt(getX(), getY(), food);
         return currentFood != null;
     }
+
     /**
-     * Breed a baby animal
+     * Returns the food found by the last call to isOnFood.
+     *
+     * @return the food, null if there was none
+     */
+    public Entity getCurrentFood(){
+        return currentFood;
+    }
+    /**
+     * Breed a baby animal of the same species, at the same location.
      */
     public void breed(){
-        //TODO implement reproduce behaviour
-        try {
-            this.getClass().getConstructor(World.class, int.class, int.class, int.class).newInstance(getWorld(), getX(), getY(), 1);
-        } catch (Exception e){
-            e.printStackTrace();
-            System.out.println("Error reproducing");
+        SpeciesDescriptor<?> species = SpeciesDescriptor.of(getStore().getSpecies(slot));
+        if(species == null){
+            throw new IllegalStateException(getClass().getSimpleName() + " is not a registered species");
         }
+        species.spawn(getWorld(), getX(), getY(), 1);
     }
 
     /**
-     * Animates the Entity moving to the given location in half a second.
+     * Moves the Entity to the given location. Observers of the World are told where it came from,
+     * so a view can animate the movement.
      *
      * @param x the new x-coordinate
      * @param y the new y-coordinate
      */
     public void moveTo(int x, int y){
-        //set the location to move to
-        mover.setByX((x - getX()) * World.CELL_SIZE);
-        mover.setByY((y - getY()) * World.CELL_SIZE);
-
-        //animate the movement
-        mover.play();
+        int oldX = getX();
+        int oldY = getY();
 
         //update coordinates
-        setX(x);
-        setY(y);
+        setLocation(x, y);
+
+        getWorld().moved(this, oldX, oldY);
     }
 }
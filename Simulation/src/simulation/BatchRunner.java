@@ -0,0 +1,292 @@
+package simulation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a parameter sweep: many headless Worlds at once, one per core, each on its own seed.
+ *
+ * Usage: BatchRunner [runs=10] [workers=cores] [ticks=1000] [sample=10] [out=batch] [seed=...]
+ *                    [wolves=10] [sheep=20] [grass=100] [fences=50] [any other WorldConfig key]
+ *
+ * Every argument that isn't one of the runner's own (runs, workers, ticks, sample, out, seed) goes to the
+ * World, and can have several values separated by commas, e.g. {@code sheep=100,200,400 maxAge=15,20}.
+ * The runner then runs every combination of the values, runs times each. Repetition r of every combination
+ * gets the same seed, mixed from the given seed and r, so the combinations are compared on the same random
+ * numbers. A run ends after the given number of ticks, or earlier when all wolves and sheep are gone.
+ *
+ * The results are written while the runs finish, in the order they finish:
+ * <ul>
+ *     <li>out-runs.csv: one line per run with its seed, its settings, the tick every species died out
+ *     (-1 if it didn't), the population at the end and how long the run took.</li>
+ *     <li>out-curves.csv: the population of every species every sample ticks, one line per run and tick.</li>
+ * </ul>
+ * The Worlds share nothing that changes, so they don't wait for each other and the sweep takes about as
+ * long as its runs divided by the number of workers.
+ *
+ * @author Layton Zhou
+ */
+public class BatchRunner {
+
+    // the arguments the runner uses itself, they don't go to the World
+    private static final String[] OWN_KEYS = {"runs", "workers", "ticks", "sample", "out", "seed"};
+
+    /**
+     * Runs the sweep.
+     *
+     * @param args command line arguments, "key=value" pairs, see the class comment
+     * @throws IOException if the results can't be written
+     * @throws InterruptedException if the runner is interrupted while it waits for the runs
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = HeadlessSimulator.intArg(args, "runs", 10);
+        int workers = HeadlessSimulator.intArg(args, "workers", Runtime.getRuntime().availableProcessors());
+        int ticks = HeadlessSimulator.intArg(args, "ticks", 1000);
+        int sample = HeadlessSimulator.intArg(args, "sample", 10);
+        String out = HeadlessSimulator.stringArg(args, "out", "batch");
+        String seedArg = HeadlessSimulator.stringArg(args, "seed", null);
+        long seed = seedArg != null ? Long.parseLong(seedArg) : Randomizer.mix(System.nanoTime());
+        if(runs < 1 || workers < 1 || ticks < 0 || sample < 1){
+            throw new IllegalArgumentException("runs, workers and sample must be positive, ticks must not be negative");
+        }
+
+        // the settings that are swept, and every combination of their values
+        List<String> keys = new ArrayList<>();
+        List<String[]> values = new ArrayList<>();
+        for(String arg : args){
+            int eq = arg.indexOf('=');
+            if(eq > 0 && !isOwnKey(arg.substring(0, eq))){
+                keys.add(arg.substring(0, eq));
+                values.add(arg.substring(eq + 1).split(","));
+            }
+        }
+        List<String[]> combinations = combinations(keys, values);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        CompletionService<Result> done = new ExecutorCompletionService<>(pool);
+        for(int c = 0; c < combinations.size(); c++){
+            for(int r = 0; r < runs; r++){
+                Run run = new Run(c * runs + r, r, combinations.get(c), Randomizer.mix(seed + r), ticks, sample);
+                done.submit(run);
+            }
+        }
+
+        int total = combinations.size() * runs;
+        int failed = 0;
+        long start = System.nanoTime();
+        try(BufferedWriter summary = Files.newBufferedWriter(Paths.get(out + "-runs.csv"));
+            BufferedWriter curves = Files.newBufferedWriter(Paths.get(out + "-curves.csv"))){
+            summary.write(summaryHeader(keys));
+            summary.newLine();
+            curves.write("run,tick");
+            for(byte kind = 0; kind < EntityStore.SPECIES_COUNT; kind++){
+                curves.write("," + SpeciesDescriptor.of(kind).getName());
+            }
+            curves.newLine();
+            for(int i = 0; i < total; i++){
+                Result result;
+                try {
+                    result = done.take().get();
+                } catch (ExecutionException e){
+                    System.err.println("a run failed: " + e.getCause());
+                    failed++;
+                    continue;
+                }
+                result.write(summary, curves);
+                summary.flush();
+                curves.flush();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println((total - failed) + " runs on " + workers + " workers in " + elapsed / 1000000 + " ms"
+                + (failed > 0 ? ", " + failed + " failed" : "") + ", seed=" + seed);
+    }
+
+    /**
+     * Checks if an argument is one of the runner's own.
+     */
+    private static boolean isOwnKey(String key){
+        for(String own : OWN_KEYS){
+            if(own.equals(key)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns every combination of the values as "key=value" arguments, the first key changing slowest.
+     */
+    private static List<String[]> combinations(List<String> keys, List<String[]> values){
+        List<String[]> answer = new ArrayList<>();
+        answer.add(new String[0]);
+        for(int k = 0; k < keys.size(); k++){
+            List<String[]> longer = new ArrayList<>();
+            for(String[] combination : answer){
+                for(String value : values.get(k)){
+                    String[] next = Arrays.copyOf(combination, k + 1);
+                    next[k] = keys.get(k) + "=" + value;
+                    longer.add(next);
+                }
+            }
+            answer = longer;
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the first line of the summary file.
+     */
+    private static String summaryHeader(List<String> keys){
+        StringBuilder header = new StringBuilder("run,repetition,seed");
+        for(String key : keys){
+            header.append(',').append(key);
+        }
+        header.append(",ticks");
+        for(byte kind = 0; kind < EntityStore.SPECIES_COUNT; kind++){
+            header.append(',').append(SpeciesDescriptor.of(kind).getName()).append("_extinct");
+        }
+        for(byte kind = 0; kind < EntityStore.SPECIES_COUNT; kind++){
+            header.append(',').append(SpeciesDescriptor.of(kind).getName());
+        }
+        return header.append(",millis").toString();
+    }
+
+    /**
+     * One World of the sweep.
+     */
+    private static final class Run implements Callable<Result> {
+        final int index;
+        final int repetition;
+        final String[] args;
+        final long seed;
+        final int ticks;
+        final int sample;
+
+        Run(int index, int repetition, String[] args, long seed, int ticks, int sample){
+            this.index = index;
+            this.repetition = repetition;
+            this.args = args;
+            this.seed = seed;
+            this.ticks = ticks;
+            this.sample = sample;
+        }
+
+        /**
+         * Builds the World, runs it and closes it again.
+         */
+        @Override
+        public Result call(){
+            long start = System.nanoTime();
+            try(World world = new World(WorldConfig.parse(args).setSeed(seed))){
+                return run(world, start);
+            }
+        }
+
+        /**
+         * Runs the World and keeps what the summary and the curves need.
+         */
+        private Result run(World world, long start){
+            world.addRandomEntities(HeadlessSimulator.intArg(args, "wolves", 10), SpeciesDescriptor.WOLF);
+            world.addRandomEntities(HeadlessSimulator.intArg(args, "sheep", 20), SpeciesDescriptor.SHEEP);
+            world.addRandomEntities(HeadlessSimulator.intArg(args, "grass", 100), SpeciesDescriptor.GRASS);
+            EntityStore store = world.getStore();
+            int species = EntityStore.SPECIES_COUNT;
+
+            long[] extinct = new long[species];
+            Arrays.fill(extinct, -1);
+            int[] curve = new int[(ticks / sample + 1) * species];
+            int samples = 0;
+            for(int tick = 0; ; tick++){
+                if(tick % sample == 0){
+                    for(byte kind = 0; kind < species; kind++){
+                        curve[samples * species + kind] = store.getPopulation(kind);
+                    }
+                    samples++;
+                }
+                for(byte kind = 0; kind < species; kind++){
+                    if(extinct[kind] < 0 && store.getPopulation(kind) == 0){
+                        extinct[kind] = tick;
+                    }
+                }
+                if(tick == ticks || (store.getPopulation(EntityStore.WOLF) == 0
+                        && store.getPopulation(EntityStore.SHEEP) == 0)){
+                    break;
+                }
+                world.act();
+            }
+            int[] population = new int[species];
+            for(byte kind = 0; kind < species; kind++){
+                population[kind] = store.getPopulation(kind);
+            }
+            return new Result(this, world.getTick(), extinct, population, curve, samples,
+                    (System.nanoTime() - start) / 1000000);
+        }
+    }
+
+    /**
+     * What a finished run writes.
+     */
+    private static final class Result {
+        final Run run;
+        final long ticks;
+        final long[] extinct;
+        final int[] population;
+        final int[] curve;
+        final int samples;
+        final long millis;
+
+        Result(Run run, long ticks, long[] extinct, int[] population, int[] curve, int samples, long millis){
+            this.run = run;
+            this.ticks = ticks;
+            this.extinct = extinct;
+            this.population = population;
+            this.curve = curve;
+            this.samples = samples;
+            this.millis = millis;
+        }
+
+        /**
+         * Writes the line of the run to the summary and its samples to the curves.
+         */
+        void write(BufferedWriter summary, BufferedWriter curves) throws IOException{
+            int species = EntityStore.SPECIES_COUNT;
+            StringBuilder line = new StringBuilder();
+            line.append(run.index).append(',').append(run.repetition).append(',').append(run.seed);
+            for(String arg : run.args){
+                line.append(',').append(arg, arg.indexOf('=') + 1, arg.length());
+            }
+            line.append(',').append(ticks);
+            for(long tick : extinct){
+                line.append(',').append(tick);
+            }
+            for(int count : population){
+                line.append(',').append(count);
+            }
+            summary.write(line.append(',').append(millis).toString());
+            summary.newLine();
+            for(int s = 0; s < samples; s++){
+                line.setLength(0);
+                line.append(run.index).append(',').append((long) s * run.sample);
+                for(int kind = 0; kind < species; kind++){
+                    line.append(',').append(curve[s * species + kind]);
+                }
+                curves.write(line.toString());
+                curves.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes primitives and arrays of them to a channel through one buffer, little-endian. Arrays are bulk
+ * copies into the buffer, so writing out the columns of the EntityStore costs little more than the I/O.
+ *
+ * Used by WorldCheckpoint and TelemetryWriter.
+ *
+ * @author Layton Zhou
+ */
+final class BinaryOutput {
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates an output that writes to a channel.
+     *
+     * @param channel the channel
+     * @param bufferSize the size of the buffer, nothing is written until it is full or flushed
+     */
+    BinaryOutput(WritableByteChannel channel, int bufferSize){
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    void writeByte(byte value) throws IOException{
+        ensure(1);
+        buffer.put(value);
+    }
+
+    void writeInt(int value) throws IOException{
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    void writeLong(long value) throws IOException{
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    void writeDouble(double value) throws IOException{
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Writes the first n values of an array.
+     */
+    void writeBytes(byte[] values, int n) throws IOException{
+        for(int i = 0; i < n; ){
+            ensure(1);
+            int k = Math.min(n - i, buffer.remaining());
+            buffer.put(values, i, k);
+            i += k;
+        }
+    }
+
+    /**
+     * Writes the first n values of an array.
+     */
+    void writeShorts(short[] values, int n) throws IOException{
+        for(int i = 0; i < n; ){
+            ensure(2);
+            int k = Math.min(n - i, buffer.remaining() / 2);
+            buffer.asShortBuffer().put(values, i, k);
+            buffer.position(buffer.position() + k * 2);
+            i += k;
+        }
+    }
+
+    /**
+     * Writes the first n values of an array.
+     */
+    void writeInts(int[] values, int n) throws IOException{
+        for(int i = 0; i < n; ){
+            ensure(4);
+            int k = Math.min(n - i, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(values, i, k);
+            buffer.position(buffer.position() + k * 4);
+            i += k;
+        }
+    }
+
+    /**
+     * Writes the first n values of an array.
+     */
+    void writeLongs(long[] values, int n) throws IOException{
+        for(int i = 0; i < n; ){
+            ensure(8);
+            int k = Math.min(n - i, buffer.remaining() / 8);
+            buffer.asLongBuffer().put(values, i, k);
+            buffer.position(buffer.position() + k * 8);
+            i += k;
+        }
+    }
+
+    /**
+     * Writes out whatever is in the buffer.
+     */
+    void flush() throws IOException{
+        buffer.flip();
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Makes room for a number of bytes in the buffer.
+     */
+    private void ensure(int bytes) throws IOException{
+        if(buffer.remaining() < bytes){
+            flush();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package simulation;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+
+/**
+ * One bit per cell of the World, packed 64 cells to a long in the order of World.toCell, so a row is a run
+ * of bits and a rectangle is a few runs.
+ *
+ * Testing or changing a cell is a shift and a mask. The bulk operations go 64 cells at a time: clearing
+ * the grid, asking if any cell of a row or a rectangle is set, and reading the four neighbours of a cell as
+ * a NavigationGrid mask without a branch per neighbour. The words are kept in a buffer, so the grid can live
+ * outside of the heap (see GridBuffers) or be mapped from a file.
+ *
+ * @author Layton Zhou
+ */
+public class BitGrid {
+
+    private final int cols;
+    private final int cells;
+    private final LongBuffer words;
+
+    /**
+     * Creates a grid with every bit clear.
+     *
+     * @param rows the number of possible x-coordinates
+     * @param cols the number of possible y-coordinates
+     * @param offHeap true to keep the grid outside of the heap
+     */
+    public BitGrid(int rows, int cols, boolean offHeap){
+        this(rows, cols, GridBuffers.longs(words(rows, cols), offHeap));
+    }
+
+    /**
+     * Creates a grid on words that are already there, e.g. mapped from a file.
+     *
+     * @param rows the number of possible x-coordinates
+     * @param cols the number of possible y-coordinates
+     * @param words words(rows, cols) longs
+     */
+    BitGrid(int rows, int cols, LongBuffer words){
+        this.cols = cols;
+        this.cells = rows * cols;
+        this.words = words;
+    }
+
+    /**
+     * Returns the number of longs the bits of a grid take.
+     *
+     * @param rows the number of possible x-coordinates
+     * @param cols the number of possible y-coordinates
+     * @return the number of longs
+     */
+    static int words(int rows, int cols){
+        return (int) (((long) rows * cols + 63) >>> 6);
+    }
+
+    /**
+     * Checks the bit of a cell.
+     *
+     * @param cell the cell number, must be inside the World
+     * @return true if it is set
+     */
+    public boolean get(int cell){
+        return (words.get(cell >>> 6) & 1L << cell) != 0;
+    }
+
+    /**
+     * Checks the bit of a location.
+     *
+     * @param x the x-coordinate, must be inside the World
+     * @param y the y-coordinate, must be inside the World
+     * @return true if it is set
+     */
+    public boolean get(int x, int y){
+        return get(x * cols + y);
+    }
+
+    /**
+     * Sets the bit of a cell.
+     *
+     * @param cell the cell number
+     */
+    public void set(int cell){
+        int w = cell >>> 6;
+        words.put(w, words.get(w) | 1L << cell);
+    }
+
+    /**
+     * Clears the bit of a cell.
+     *
+     * @param cell the cell number
+     */
+    public void clear(int cell){
+        int w = cell >>> 6;
+        words.put(w, words.get(w) & ~(1L << cell));
+    }
+
+    /**
+     * Sets the bit of a cell and tells if it is the first bit of its word, for grids that keep track of the
+     * words they have to clear (see OccupancyGrid).
+     *
+     * @param cell the cell number
+     * @return true if no bit of the 64 cells in the word of the cell was set before
+     */
+    public boolean setFirstInWord(int cell){
+        int w = cell >>> 6;
+        long word = words.get(w);
+        words.put(w, word | 1L << cell);
+        return word == 0;
+    }
+
+    /**
+     * Clears the bits of a word, 64 cells at once.
+     *
+     * @param w the index of the word, cell >>> 6 for a cell in it
+     */
+    public void clearWord(int w){
+        words.put(w, 0L);
+    }
+
+    /**
+     * Sets or clears the bit of a cell.
+     *
+     * @param cell the cell number
+     * @param value true to set it
+     */
+    public void put(int cell, boolean value){
+        if(value){
+            set(cell);
+        }else{
+            clear(cell);
+        }
+    }
+
+    /**
+     * Clears every bit.
+     */
+    public void clear(){
+        GridBuffers.fill(words, 0L);
+    }
+
+    /**
+     * Sets every bit.
+     */
+    public void setAll(){
+        GridBuffers.fill(words, -1L);
+    }
+
+    /**
+     * Counts the bits that are set.
+     *
+     * @return the number of cells
+     */
+    public int count(){
+        int count = 0;
+        int last = words.limit() - 1;
+        for(int w = 0; w < last; w++){
+            count += Long.bitCount(words.get(w));
+        }
+        // setAll sets the bits behind the last cell too
+        return count + Long.bitCount(words.get(last) & lowBits(cells - (last << 6)));
+    }
+
+    /**
+     * Checks if any cell in a range of cell numbers is set, e.g. a part of a row.
+     *
+     * @param from the first cell
+     * @param to the cell after the last one, not less than from
+     * @return true if a bit in the range is set
+     */
+    public boolean any(int from, int to){
+        if(from >= to){
+            return false;
+        }
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long head = -1L << from;
+        long tail = lowBits(to - (last << 6));
+        if(first == last){
+            return (words.get(first) & head & tail) != 0;
+        }
+        if((words.get(first) & head) != 0 || (words.get(last) & tail) != 0){
+            return true;
+        }
+        for(int w = first + 1; w < last; w++){
+            if(words.get(w) != 0){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any cell of a rectangle is set. The rectangle may stick out of the World, only the part
+     * inside is looked at.
+     *
+     * @param fromX the smallest x-coordinate
+     * @param fromY the smallest y-coordinate
+     * @param toX the largest x-coordinate
+     * @param toY the largest y-coordinate
+     * @return true if a bit in the rectangle is set
+     */
+    public boolean any(int fromX, int fromY, int toX, int toY){
+        int rows = cells / cols;
+        fromX = Math.max(fromX, 0);
+        fromY = Math.max(fromY, 0);
+        toX = Math.min(toX, rows - 1);
+        toY = Math.min(toY, cols - 1);
+        if(fromY > toY){
+            return false;
+        }
+        if(fromY == 0 && toY == cols - 1){
+            // whole rows are one run of bits
+            return fromX <= toX && any(fromX * cols, (toX + 1) * cols);
+        }
+        for(int x = fromX; x <= toX; x++){
+            if(any(x * cols + fromY, x * cols + toY + 1)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the neighbours of a cell: the directions of the mask whose neighbour has its bit set.
+     *
+     * @param cell the cell number
+     * @param mask the directions to look at, NavigationGrid.DOWN, RIGHT, UP and LEFT or-ed together. Only
+     *             neighbours inside the World may be in it, e.g. from NavigationGrid.getMask
+     * @return the directions of the mask whose bit is set
+     */
+    public int neighbours(int cell, int mask){
+        // the clamped numbers are only read for directions the mask drops anyway
+        int down = bit(Math.min(cell + cols, cells - 1));
+        int right = bit(Math.min(cell + 1, cells - 1));
+        int up = bit(Math.max(cell - cols, 0));
+        int left = bit(Math.max(cell - 1, 0));
+        return (down * NavigationGrid.DOWN | right * NavigationGrid.RIGHT | up * NavigationGrid.UP
+                | left * NavigationGrid.LEFT) & mask;
+    }
+
+    /**
+     * Writes the words, the way a TerrainFile keeps them.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    void writeTo(BinaryOutput out) throws IOException{
+        long[] chunk = new long[4096];
+        LongBuffer bits = words.duplicate().clear();
+        while(bits.hasRemaining()){
+            int n = Math.min(chunk.length, bits.remaining());
+            bits.get(chunk, 0, n);
+            out.writeLongs(chunk, n);
+        }
+    }
+
+    /**
+     * Returns the bit of a cell as 0 or 1.
+     */
+    private int bit(int cell){
+        return (int) (words.get(cell >>> 6) >>> cell) & 1;
+    }
+
+    /**
+     * Returns a word with the lowest n bits set, n from 1 to 64.
+     */
+    private static long lowBits(int n){
+        return -1L >>> (64 - n);
+    }
+}
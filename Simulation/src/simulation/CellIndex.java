@@ -0,0 +1,134 @@
+package simulation;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * An index of which entities are in which cell of the World, so looking up a cell doesn't have to
+ * go through every Entity.
+ *
+ * Every cell keeps a linked list of the EntityStore slots standing on it. A cell usually only holds a
+ * handful of entities, so walking its list is as good as O(1), and entities of different types can
+ * share a cell. The heads of the lists can live outside of the heap (see GridBuffers), the links between
+ * slots grow with the number of entities and stay on it.
+ *
+ * @author Layton Zhou
+ */
+public class CellIndex {
+
+    //number of cells in a column, used to turn (x, y) into a cell number
+    private final int cols;
+    //the first slot in every cell, -1 if the cell is empty
+    private final IntBuffer heads;
+    //the next slot in the same cell, -1 at the end of the list
+    private int[] next;
+
+    /**
+     * Creates an empty index for a World of the given size on the heap.
+     *
+     * @param rows the number of possible x-coordinates
+     * @param cols the number of possible y-coordinates
+     */
+    public CellIndex(int rows, int cols){
+        this(rows, cols, false);
+    }
+
+    /**
+     * Creates an empty index for a World of the given size.
+     *
+     * @param rows the number of possible x-coordinates
+     * @param cols the number of possible y-coordinates
+     * @param offHeap true to keep the heads of the lists outside of the heap
+     */
+    public CellIndex(int rows, int cols, boolean offHeap){
+        this.cols = cols;
+        this.heads = GridBuffers.ints((long) rows * cols, offHeap);
+        GridBuffers.fill(heads, -1);
+        this.next = new int[16];
+    }
+
+    /**
+     * Adds a slot to a cell.
+     *
+     * @param slot the slot to add
+     * @param x the x-coordinate of the cell
+     * @param y the y-coordinate of the cell
+     */
+    public void add(int slot, int x, int y){
+        if(slot >= next.length){
+            next = Arrays.copyOf(next, Math.max(next.length * 2, slot + 1));
+        }
+        int cell = cell(x, y);
+        next[slot] = heads.get(cell);
+        heads.put(cell, slot);
+    }
+
+    /**
+     * Removes a slot from a cell.
+     *
+     * @param slot the slot to remove
+     * @param x the x-coordinate of the cell it is indexed at
+     * @param y the y-coordinate of the cell it is indexed at
+     */
+    public void remove(int slot, int x, int y){
+        int cell = cell(x, y);
+        int previous = -1;
+        for(int s = heads.get(cell); s >= 0; s = next[s]){
+            if(s == slot){
+                if(previous < 0){
+                    heads.put(cell, next[s]);
+                }else{
+                    next[previous] = next[s];
+                }
+                next[slot] = -1;
+                return;
+            }
+            previous = s;
+        }
+    }
+
+    /**
+     * Moves a slot from one cell to another.
+     *
+     * @param slot the slot that moved
+     * @param fromX the x-coordinate it came from
+     * @param fromY the y-coordinate it came from
+     * @param toX the x-coordinate it is at now
+     * @param toY the y-coordinate it is at now
+     */
+    public void move(int slot, int fromX, int fromY, int toX, int toY){
+        if(fromX == toX && fromY == toY){
+            return;
+        }
+        remove(slot, fromX, fromY);
+        add(slot, toX, toY);
+    }
+
+    /**
+     * Returns the first slot in a cell.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return the first slot in the cell, -1 if the cell is empty
+     */
+    public int first(int x, int y){
+        return heads.get(cell(x, y));
+    }
+
+    /**
+     * Returns the slot after the given one in the same cell.
+     *
+     * @param slot a slot in the index
+     * @return the next slot, -1 if this was the last one
+     */
+    public int next(int slot){
+        return next[slot];
+    }
+
+    /**
+     * Turns a location into a cell number.
+     */
+    private int cell(int x, int y){
+        return x * cols + y;
+    }
+}
@@ -0,0 +1,19 @@
+package simulation;
+
+/**
+ * Why an Entity left the World.
+ *
+ * @author Layton Zhou
+ */
+public enum DeathCause {
+    /** its health dropped to 0 */
+    STARVATION,
+    /** it grew older than an animal can get */
+    OLD_AGE,
+    /** something ate it */
+    EATEN,
+    /** it had nowhere to go */
+    STUCK,
+    /** it was taken out of the World for any other reason */
+    REMOVED
+}
@@ -1,7 +1,5 @@
 package simulation;
 
-import javafx.scene.image.Image;
-
 /**
  * This class handles a lot of the logic for any type of Object that might live in our world.
  *
@@ -9,21 +7,33 @@ import javafx.scene.image.Image;
  */
 public class Entity extends Sprite{
 
-    private boolean died;
-    private int health;
     /**
-     * Create a new Entity. This will also add this Entity to the world and set the image.
+     * Create a new Entity. This will also add this Entity to the world.
+     *
+     * The whole state is stored in the World's EntityStore before the Entity is handed to the World,
+     * so whoever observes the World sees a complete Entity.
      *
      * @param world the world this Entity lives in
      * @param x the x-coordinate of this Entity
      * @param y the y-coordinate of this Entity
-     * @param image the image that represents this Entity
+     * @param health the initial health of this Entity
+     * @param age the initial age of this Entity
      */
-    public Entity(World world, int x, int y, int health, Image image){
-        super(world, x, y, image);
+    public Entity(World world, int x, int y, int health, int age){
+        super(world, x, y);
+        getStore().setHealth(slot, health);
+        getStore().setAge(slot, age);
         world.add_to_list(this);
-        this.died = false;
-        this.health = health;
+    }
+
+    /**
+     * Creates the handle of an Entity that is already in the World, e.g. one loaded from a checkpoint.
+     *
+     * @param world the world this Entity lives in
+     * @param slot the slot this Entity lives in
+     */
+    Entity(World world, int slot){
+        super(world, slot);
     }
 
     /**
@@ -48,8 +58,16 @@ public class Entity extends Sprite{
      * Delete this Entity from the world.
      */
     public void destroy(){
-        getWorld().remove(this);
-        died = true;
+        destroy(DeathCause.REMOVED);
+    }
+
+    /**
+     * Delete this Entity from the world and tell the world why.
+     *
+     * @param cause why it has to go
+     */
+    public void destroy(DeathCause cause){
+        getWorld().remove(this, cause);
     }
 
     /**
@@ -58,7 +76,7 @@ public class Entity extends Sprite{
      * @return the health of this Entity.
      */
     public int getHealth(){
-        return health;
+        return getStore().getHealth(slot);
     }
 
     /**
@@ -67,7 +85,7 @@ public class Entity extends Sprite{
      * @param amount the amount to decrease the health by.
      */
     public void decreaseHealth(int amount){
-        health -= amount;
+        getStore().setHealth(slot, getHealth() - amount);
     }
 
     /**
@@ -76,16 +94,35 @@ public class Entity extends Sprite{
      * @param amount the amount to increase the health by.
      */
     public void increaseHealth(int amount){
-        health += amount;
+        getStore().setHealth(slot, getHealth() + amount);
+    }
+
+    /**
+     * Returns the age of this Entity.
+     *
+     * @return the age of this Entity.
+     */
+    public int getAge(){
+        return getStore().getAge(slot);
+    }
+
+    /**
+     * Makes this Entity one year older.
+     */
+    public void increaseAge(){
+        getStore().setAge(slot, getAge() + 1);
     }
 
     /**
      * Returns whether this Entity has died.
      *
+     * A dead Entity keeps its state until the end of the tick it died in, after that its slot is
+     * given to someone else and only isDead() can still be asked.
+     *
      * @return whether this Entity has died.
      */
     public boolean isDead(){
-        return died;
+        return slot < 0 || getStore().getState(slot) == EntityStore.DEAD;
     }
 
 
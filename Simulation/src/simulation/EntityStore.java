@@ -0,0 +1,490 @@
+package simulation;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Holds the state of every Entity in a World, one primitive array per field (x, y, health, age, species
+ * and state), instead of one object per Entity. An Entity object is only a handle that points at its slot.
+ *
+ * Slots of dead entities are not reused right away: they are kept until the end of the tick, so a dead
+ * Entity can still be looked at during the tick it died in. After that its slot goes on a free list and
+ * is handed out again to the next Entity that is born.
+ *
+ * Every species also has a dense list of its members' slots, so going through all wolves doesn't have to
+ * skip over the sheep, the grass and the holes. Newborns are added to the end of the list right away and
+ * the dead are swap-removed at the end of the tick, so removal is O(1) and the list never changes under
+ * someone who is going through it. The order only depends on the order of births and deaths, so runs
+ * stay reproducible.
+ *
+ * Every Entity also gets an id when it is added to the World. Ids count up in the order entities are added
+ * and are never reused, unlike slots, so they can name the random stream of an Entity (see Randomizer).
+ *
+ * @author Layton Zhou
+ */
+public class EntityStore {
+
+    // species of an Entity
+    public static final byte NONE = -1;
+    public static final byte WOLF = 0;
+    public static final byte SHEEP = 1;
+    public static final byte GRASS = 2;
+    public static final int SPECIES_COUNT = 3;
+
+    // state of a slot
+    public static final byte FREE = 0;
+    // the Entity is alive and acts every tick
+    public static final byte ALIVE = 1;
+    // the Entity was born during this tick, it starts acting next tick
+    public static final byte BORN = 2;
+    // the Entity died during this tick, its slot is freed at the end of the tick
+    public static final byte DEAD = 3;
+
+    private int[] x;
+    private int[] y;
+    private int[] health;
+    private int[] age;
+    private byte[] species;
+    private byte[] state;
+    private long[] id;
+    private Sprite[] handles;
+
+    // every slot below this has been used at some point
+    private int size;
+
+    // the id the next Entity gets
+    private long nextId;
+
+    // slots that can be reused
+    private int[] free;
+    private int freeCount;
+    // slots that died this tick
+    private int[] dead;
+    private int deadCount;
+    // slots that were born this tick
+    private int[] born;
+    private int bornCount;
+
+    // number of living entities of each species
+    private final int[] population = new int[SPECIES_COUNT];
+
+    // the slots of every species, in the order they go through a tick
+    private final int[][] members = new int[SPECIES_COUNT][16];
+    private final int[] memberCount = new int[SPECIES_COUNT];
+    // where every slot is in its species' member list
+    private int[] memberIndex;
+
+    /**
+     * Creates an empty store.
+     *
+     * @param capacity the number of slots to start with, the store grows when needed
+     */
+    public EntityStore(int capacity){
+        capacity = Math.max(capacity, 16);
+        x = new int[capacity];
+        y = new int[capacity];
+        health = new int[capacity];
+        age = new int[capacity];
+        species = new byte[capacity];
+        state = new byte[capacity];
+        id = new long[capacity];
+        handles = new Sprite[capacity];
+        memberIndex = new int[capacity];
+        free = new int[16];
+        dead = new int[16];
+        born = new int[16];
+    }
+
+    /**
+     * Finds a slot for a new Entity. The slot stays FREE until the Entity is added to the World.
+     *
+     * @param handle the Entity that will live in the slot
+     * @return the slot
+     */
+    public int allocate(Sprite handle){
+        int slot;
+        if(freeCount > 0){
+            slot = free[--freeCount];
+        }else{
+            if(size == state.length){
+                grow();
+            }
+            slot = size++;
+        }
+        handles[slot] = handle;
+        species[slot] = NONE;
+        state[slot] = FREE;
+        return slot;
+    }
+
+    /**
+     * Hands a slot that is already in use to a new handle, e.g. after the store was loaded from a checkpoint.
+     *
+     * @param slot the slot
+     * @param handle the Entity that lives in the slot
+     */
+    void attach(int slot, Sprite handle){
+        handles[slot] = handle;
+    }
+
+    /**
+     * Brings an allocated slot to life.
+     *
+     * @param slot the slot
+     * @param kind the species of the Entity
+     * @param duringTick true if the World is in the middle of a tick, the Entity then only starts acting next tick
+     */
+    public void activate(int slot, byte kind, boolean duringTick){
+        species[slot] = kind;
+        id[slot] = nextId++;
+        if(duringTick){
+            state[slot] = BORN;
+            born = push(born, bornCount++, slot);
+        }else{
+            state[slot] = ALIVE;
+        }
+        if(kind != NONE){
+            population[kind]++;
+            memberIndex[slot] = memberCount[kind];
+            members[kind] = push(members[kind], memberCount[kind]++, slot);
+        }
+    }
+
+    /**
+     * Marks a slot as dead. The slot is freed at the end of the tick.
+     *
+     * @param slot the slot
+     */
+    public void kill(int slot){
+        state[slot] = DEAD;
+        if(species[slot] != NONE){
+            population[species[slot]]--;
+        }
+        dead = push(dead, deadCount++, slot);
+    }
+
+    /**
+     * Finishes a tick: entities born during the tick become ALIVE, entities that died are taken out of their
+     * species' member list and their slots are put on the free list. The handles of the dead lose their slot.
+     */
+    public void endTick(){
+        for(int i = 0; i < bornCount; i++){
+            if(state[born[i]] == BORN){
+                state[born[i]] = ALIVE;
+            }
+        }
+        bornCount = 0;
+        for(int i = 0; i < deadCount; i++){
+            int slot = dead[i];
+            byte kind = species[slot];
+            if(kind != NONE){
+                // move the last member into the hole
+                int last = members[kind][--memberCount[kind]];
+                members[kind][memberIndex[slot]] = last;
+                memberIndex[last] = memberIndex[slot];
+            }
+            handles[slot].slot = -1;
+            handles[slot] = null;
+            state[slot] = FREE;
+            free = push(free, freeCount++, slot);
+        }
+        deadCount = 0;
+    }
+
+    /**
+     * Returns the number of slots that have been used, every slot in use is below this.
+     *
+     * @return the number of used slots
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Returns the number of slots the store can hold before it has to grow.
+     *
+     * @return the capacity
+     */
+    public int capacity(){
+        return state.length;
+    }
+
+    /**
+     * Returns the number of living entities of a species.
+     *
+     * @param kind the species
+     * @return the number of living entities
+     */
+    public int getPopulation(byte kind){
+        return population[kind];
+    }
+
+    /**
+     * Returns the length of a species' member list. This includes members that died during this tick,
+     * they are only taken out at the end of the tick.
+     *
+     * @param kind the species
+     * @return the number of slots in the member list
+     */
+    public int getMemberCount(byte kind){
+        return memberCount[kind];
+    }
+
+    /**
+     * Returns a slot from a species' member list.
+     *
+     * @param kind the species
+     * @param index the position in the member list, from 0 to getMemberCount(kind) - 1
+     * @return the slot
+     */
+    public int getMember(byte kind, int index){
+        return members[kind][index];
+    }
+
+    /**
+     * Returns the x-coordinate of the Entity in a slot.
+     *
+     * @param slot the slot
+     * @return the x-coordinate
+     */
+    public int getX(int slot){
+        return x[slot];
+    }
+
+    /**
+     * Returns the y-coordinate of the Entity in a slot.
+     *
+     * @param slot the slot
+     * @return the y-coordinate
+     */
+    public int getY(int slot){
+        return y[slot];
+    }
+
+    /**
+     * Sets the location of the Entity in a slot.
+     *
+     * @param slot the slot
+     * @param x the new x-coordinate
+     * @param y the new y-coordinate
+     */
+    public void setLocation(int slot, int x, int y){
+        this.x[slot] = x;
+        this.y[slot] = y;
+    }
+
+    /**
+     * Returns the health of the Entity in a slot.
+     *
+     * @param slot the slot
+     * @return the health
+     */
+    public int getHealth(int slot){
+        return health[slot];
+    }
+
+    /**
+     * Sets the health of the Entity in a slot.
+     *
+     * @param slot the slot
+     * @param health the new health
+     */
+    public void setHealth(int slot, int health){
+        this.health[slot] = health;
+    }
+
+    /**
+     * Returns the age of the Entity in a slot.
+     *
+     * @param slot the slot
+     * @return the age
+     */
+    public int getAge(int slot){
+        return age[slot];
+    }
+
+    /**
+     * Sets the age of the Entity in a slot.
+     *
+     * @param slot the slot
+     * @param age the new age
+     */
+    public void setAge(int slot, int age){
+        this.age[slot] = age;
+    }
+
+    /**
+     * Returns the species of the Entity in a slot.
+     *
+     * @param slot the slot
+     * @return one of WOLF, SHEEP, GRASS or NONE
+     */
+    public byte getSpecies(int slot){
+        return species[slot];
+    }
+
+    /**
+     * Returns the state of a slot.
+     *
+     * @param slot the slot
+     * @return one of FREE, ALIVE, BORN or DEAD
+     */
+    public byte getState(int slot){
+        return state[slot];
+    }
+
+    /**
+     * Returns the id of the Entity in a slot.
+     *
+     * @param slot the slot
+     * @return the id, unique within the World
+     */
+    public long getId(int slot){
+        return id[slot];
+    }
+
+    /**
+     * Returns the id the next Entity will get.
+     *
+     * @return the next id
+     */
+    public long getNextId(){
+        return nextId;
+    }
+
+    /**
+     * Checks if the Entity in a slot is alive, no matter if it was born during this tick.
+     *
+     * @param slot the slot
+     * @return true if the slot holds a living Entity
+     */
+    public boolean isLiving(int slot){
+        return state[slot] == ALIVE || state[slot] == BORN;
+    }
+
+    /**
+     * Returns the Entity object that belongs to a slot.
+     *
+     * @param slot the slot
+     * @return the Entity, null if the slot is free
+     */
+    public Entity getEntity(int slot){
+        return (Entity) handles[slot];
+    }
+
+    /**
+     * Writes every slot, the free list and the member lists to a checkpoint, see WorldCheckpoint.
+     * Only works between ticks, when nobody is BORN or DEAD.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    void writeTo(BinaryOutput out) throws IOException{
+        if(bornCount > 0 || deadCount > 0){
+            throw new IllegalStateException("can't save the store in the middle of a tick");
+        }
+        out.writeInt(size);
+        out.writeLong(nextId);
+        out.writeInts(x, size);
+        out.writeInts(y, size);
+        out.writeInts(health, size);
+        out.writeInts(age, size);
+        out.writeLongs(id, size);
+        out.writeBytes(species, size);
+        out.writeBytes(state, size);
+        out.writeInt(freeCount);
+        out.writeInts(free, freeCount);
+        for(int kind = 0; kind < SPECIES_COUNT; kind++){
+            out.writeInt(memberCount[kind]);
+            out.writeInts(members[kind], memberCount[kind]);
+        }
+    }
+
+    /**
+     * Replaces the contents of this empty store with what writeTo wrote. The slots don't have handles yet,
+     * see attach.
+     *
+     * @param in where to read from
+     * @throws IOException if the checkpoint is broken
+     */
+    void readFrom(WorldCheckpoint.Input in) throws IOException{
+        // x, y, health, age, id, species and state
+        int size = in.readCount(4 + 4 + 4 + 4 + 8 + 1 + 1);
+        int capacity = Math.max(size, 16);
+        x = new int[capacity];
+        y = new int[capacity];
+        health = new int[capacity];
+        age = new int[capacity];
+        species = new byte[capacity];
+        state = new byte[capacity];
+        id = new long[capacity];
+        handles = new Sprite[capacity];
+        memberIndex = new int[capacity];
+        this.size = size;
+        nextId = in.readLong();
+        in.readInts(x, size);
+        in.readInts(y, size);
+        in.readInts(health, size);
+        in.readInts(age, size);
+        in.readLongs(id, size);
+        in.readBytes(species, size);
+        in.readBytes(state, size);
+        for(int slot = 0; slot < size; slot++){
+            if(state[slot] != FREE && state[slot] != ALIVE){
+                throw in.corrupt("slot " + slot + " is in state " + state[slot]);
+            }
+            if(species[slot] < NONE || species[slot] >= SPECIES_COUNT){
+                throw in.corrupt("slot " + slot + " has species " + species[slot]);
+            }
+        }
+        freeCount = in.readCount(4);
+        free = new int[Math.max(freeCount, 16)];
+        in.readInts(free, freeCount);
+        for(int i = 0; i < freeCount; i++){
+            if(free[i] < 0 || free[i] >= size || state[free[i]] != FREE){
+                throw in.corrupt("free slot " + free[i]);
+            }
+        }
+        for(byte kind = 0; kind < SPECIES_COUNT; kind++){
+            memberCount[kind] = in.readCount(4);
+            members[kind] = new int[Math.max(memberCount[kind], 16)];
+            in.readInts(members[kind], memberCount[kind]);
+            population[kind] = 0;
+            for(int i = 0; i < memberCount[kind]; i++){
+                int slot = members[kind][i];
+                if(slot < 0 || slot >= size || state[slot] != ALIVE || species[slot] != kind){
+                    throw in.corrupt("member " + slot);
+                }
+                memberIndex[slot] = i;
+                population[kind]++;
+            }
+        }
+    }
+
+    /**
+     * Doubles the size of all arrays.
+     */
+    private void grow(){
+        int capacity = state.length * 2;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        health = Arrays.copyOf(health, capacity);
+        age = Arrays.copyOf(age, capacity);
+        species = Arrays.copyOf(species, capacity);
+        state = Arrays.copyOf(state, capacity);
+        id = Arrays.copyOf(id, capacity);
+        handles = Arrays.copyOf(handles, capacity);
+        memberIndex = Arrays.copyOf(memberIndex, capacity);
+    }
+
+    /**
+     * Stores a value at the given index of an int stack, growing it if needed.
+     */
+    private static int[] push(int[] stack, int index, int value){
+        if(index == stack.length){
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[index] = value;
+        return stack;
+    }
+}
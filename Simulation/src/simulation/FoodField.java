@@ -0,0 +1,347 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * How many steps every cell is away from the nearest food of one species, walking around fences.
+ *
+ * An animal that follows the field downhill always finds the food it can reach, where heading straight
+ * for the nearest food gets it stuck at the first fence in the way. The field is a breadth-first search
+ * from every cell with food, over the passable cells of the NavigationGrid.
+ *
+ * The World tells the field about every food that comes, goes or moves and about every fence that changes.
+ * The field only writes those down. The next time somebody asks for a distance, it repairs the field
+ * around them: cells that got their distance from food that is gone are forgotten and filled in again
+ * from their neighbours, and new food lowers the distances around it as far as it is the nearest. If a
+ * lot has changed since the last time, the field is simply built again from scratch, so a field that
+ * nobody asks costs next to nothing.
+ *
+ * Distances can be read by several threads at once, e.g. by the parallel tick, as long as nothing changes
+ * at the same time.
+ *
+ * @author Layton Zhou
+ */
+public class FoodField {
+
+    /** the distance of a cell from which no food can be reached */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final int[] DIRECTIONS = {
+            NavigationGrid.DOWN, NavigationGrid.RIGHT, NavigationGrid.UP, NavigationGrid.LEFT};
+
+    private final World world;
+    private final NavigationGrid navigation;
+    private final int cells;
+
+    // the number of food entities in every cell
+    private final short[] food;
+    // the distance of every cell, null until somebody asks
+    private int[] distance;
+
+    // cells whose food or fence changed since the last update, forgotten if there are too many
+    private int[] changed = new int[64];
+    private int changedCount;
+    private final int maxChanged;
+    // true if the field has to be built from scratch
+    private boolean stale = true;
+    // true if there is anything to update, read without the lock
+    private volatile boolean dirty = true;
+
+    // work lists of update, kept so they don't have to be allocated every time
+    private int[] queue = new int[64];
+    private int[] queueDistance = new int[64];
+    private int[] invalid = new int[64];
+    private long[] seeds = new long[64];
+
+    /**
+     * Creates the field of one food species, without food.
+     *
+     * @param world the World
+     */
+    public FoodField(World world){
+        this.world = world;
+        this.navigation = world.getNavigation();
+        this.cells = world.getRows() * world.getCols();
+        this.food = new short[cells];
+        this.maxChanged = cells / 16 + 64;
+    }
+
+    /**
+     * Returns how many steps a cell is away from the nearest food, 0 if it has food.
+     *
+     * @param cell the cell number, see World.toCell
+     * @return the number of steps, UNREACHABLE if there is no food it can walk to
+     */
+    public int getDistance(int cell){
+        if(dirty){
+            update();
+        }
+        return distance[cell];
+    }
+
+    /**
+     * Picks the neighbour to go to for the food: one step closer, not in the grid, the first in the order
+     * DOWN, RIGHT, UP, LEFT if there are several.
+     *
+     * @param cell the cell to go from
+     * @param grid cells that are taken, may be null
+     * @return the cell number of the step, -1 if there is no food to go to or every step is taken
+     */
+    public int step(int cell, OccupancyGrid grid){
+        int d = getDistance(cell);
+        if(d == 0 || d == UNREACHABLE){
+            return -1;
+        }
+        int mask = navigation.getMask(cell);
+        for(int direction : DIRECTIONS){
+            if((mask & direction) == 0){
+                continue;
+            }
+            int next = navigation.neighbour(cell, direction);
+            if(distance[next] == d - 1 && (grid == null || !grid.isOccupied(next))){
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Notes that a food entity came into a cell.
+     *
+     * @param cell the cell number
+     */
+    void added(int cell){
+        if(food[cell]++ == 0){
+            changed(cell);
+        }
+    }
+
+    /**
+     * Notes that a food entity left a cell.
+     *
+     * @param cell the cell number
+     */
+    void removed(int cell){
+        if(--food[cell] == 0){
+            changed(cell);
+        }
+    }
+
+    /**
+     * Notes that something about a cell changed, e.g. its fence.
+     *
+     * @param cell the cell number
+     */
+    void changed(int cell){
+        dirty = true;
+        if(stale){
+            return;
+        }
+        if(changedCount == maxChanged){
+            // cheaper to start over than to repair this much
+            stale = true;
+            changedCount = 0;
+            return;
+        }
+        if(changedCount == changed.length){
+            changed = Arrays.copyOf(changed, changedCount * 2);
+        }
+        changed[changedCount++] = cell;
+    }
+
+    /**
+     * Brings the distances up to date with everything that changed.
+     */
+    private synchronized void update(){
+        if(!dirty){
+            return;
+        }
+        if(stale || distance == null){
+            rebuild();
+        }else{
+            repair();
+        }
+        changedCount = 0;
+        stale = false;
+        dirty = false;
+    }
+
+    /**
+     * Works out every distance from scratch.
+     */
+    private void rebuild(){
+        if(distance == null){
+            distance = new int[cells];
+        }
+        Arrays.fill(distance, UNREACHABLE);
+        int n = 0;
+        for(int cell = 0; cell < cells; cell++){
+            if(food[cell] > 0 && navigation.isPassable(cell)){
+                distance[cell] = 0;
+                n = push(n, cell, 0);
+            }
+        }
+        spread(n, 0);
+        count(cells);
+    }
+
+    /**
+     * Repairs the distances around the cells that changed.
+     */
+    private void repair(){
+        // forget every distance that might have come from food that is gone or from a cell that is fenced now
+        int invalidCount = 0;
+        for(int i = 0; i < changedCount; i++){
+            int cell = changed[i];
+            int d = distance[cell];
+            boolean lost = d == 0 ? food[cell] == 0 || !navigation.isPassable(cell)
+                    : d != UNREACHABLE && !navigation.isPassable(cell);
+            if(!lost){
+                continue;
+            }
+            distance[cell] = UNREACHABLE;
+            invalidCount = addInvalid(invalidCount, cell);
+            int n = push(0, cell, d);
+            for(int head = 0; head < n; head++){
+                int from = queue[head];
+                int next = queueDistance[head] + 1;
+                int mask = navigation.getMask(from);
+                for(int direction : DIRECTIONS){
+                    if((mask & direction) != 0){
+                        int to = navigation.neighbour(from, direction);
+                        if(distance[to] == next){
+                            distance[to] = UNREACHABLE;
+                            invalidCount = addInvalid(invalidCount, to);
+                            n = push(n, to, next);
+                        }
+                    }
+                }
+            }
+        }
+        // fill them in again from their neighbours, together with the cells that changed
+        int seedCount = 0;
+        for(int i = 0; i < invalidCount + changedCount; i++){
+            int cell = i < invalidCount ? invalid[i] : changed[i - invalidCount];
+            if(!navigation.isPassable(cell)){
+                continue;
+            }
+            int d = food[cell] > 0 ? 0 : nearestNeighbour(cell);
+            if(d < distance[cell]){
+                distance[cell] = d;
+                if(seedCount == seeds.length){
+                    seeds = Arrays.copyOf(seeds, seedCount * 2);
+                }
+                seeds[seedCount++] = (long) d << 32 | cell;
+            }
+        }
+        Arrays.sort(seeds, 0, seedCount);
+        spreadFrom(seedCount);
+        count(invalidCount);
+    }
+
+    /**
+     * Returns one more than the smallest distance of the passable neighbours of a cell.
+     */
+    private int nearestNeighbour(int cell){
+        int best = UNREACHABLE;
+        int mask = navigation.getMask(cell);
+        for(int direction : DIRECTIONS){
+            if((mask & direction) != 0){
+                best = Math.min(best, distance[navigation.neighbour(cell, direction)]);
+            }
+        }
+        return best == UNREACHABLE ? UNREACHABLE : best + 1;
+    }
+
+    /**
+     * Runs the breadth-first search on from the seeds, which are sorted by distance. The queue and the seeds
+     * are taken in order of distance, so every cell gets its smallest distance the first time it is reached.
+     */
+    private void spreadFrom(int seedCount){
+        int n = 0;
+        int head = 0;
+        int s = 0;
+        while(s < seedCount || head < n){
+            int cell, d;
+            if(s < seedCount && (head == n || (int) (seeds[s] >>> 32) <= queueDistance[head])){
+                cell = (int) seeds[s];
+                d = (int) (seeds[s++] >>> 32);
+            }else{
+                cell = queue[head];
+                d = queueDistance[head++];
+            }
+            if(distance[cell] != d){
+                // it was reached on a shorter way in the meantime
+                continue;
+            }
+            n = relax(n, cell, d);
+        }
+    }
+
+    /**
+     * Runs the breadth-first search on from the first n cells in the queue.
+     */
+    private void spread(int n, int head){
+        while(head < n){
+            int cell = queue[head];
+            n = relax(n, cell, queueDistance[head++]);
+        }
+    }
+
+    /**
+     * Gives the passable neighbours of a cell the distance through it, if that is shorter.
+     *
+     * @return the new length of the queue
+     */
+    private int relax(int n, int cell, int d){
+        int mask = navigation.getMask(cell);
+        for(int direction : DIRECTIONS){
+            if((mask & direction) != 0){
+                int to = navigation.neighbour(cell, direction);
+                if(distance[to] > d + 1){
+                    distance[to] = d + 1;
+                    n = push(n, to, d + 1);
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Adds a cell to the end of the queue.
+     *
+     * @return the new length of the queue
+     */
+    private int push(int n, int cell, int d){
+        if(n == queue.length){
+            queue = Arrays.copyOf(queue, n * 2);
+            queueDistance = Arrays.copyOf(queueDistance, n * 2);
+        }
+        queue[n] = cell;
+        queueDistance[n] = d;
+        return n + 1;
+    }
+
+    /**
+     * Adds a cell to the list of forgotten cells.
+     *
+     * @return the new length of the list
+     */
+    private int addInvalid(int n, int cell){
+        if(n == invalid.length){
+            invalid = Arrays.copyOf(invalid, n * 2);
+        }
+        invalid[n] = cell;
+        return n + 1;
+    }
+
+    /**
+     * Counts the cells an update had to look at, if somebody is profiling.
+     */
+    private void count(int n){
+        TickProfiler profiler = world.getProfiler();
+        if(profiler != null){
+            profiler.count(TickProfiler.Counter.FOOD_FIELD_CELLS, n);
+        }
+    }
+}
@@ -1,50 +1,34 @@
 package simulation;
 
-import javafx.scene.image.Image;
-
 /**
- * This class represents grass. Grass can spread to neighbouring tiles.
+ * This class represents grass. Grass can spread to neighbouring tiles, the World's GrassField decides
+ * where, so grass doesn't take turns of its own.
  *
  * @author Mr. Smithe
  */
 public class Grass extends Entity {
 
-    //all grass share one image
-    private static final Image grassImage = new Image("images/grass.png");
-    //the health sheep can get by eating grass
-    private static final int health = 5;
     /**
      * Construct a new Grass object in the given world, at the given location.
      *
      * @param world the World where this grass will live.
      * @param x the x-coordinate of the grass
      * @param y the y-coordinate of the grass
-     * @param age unused, just to keep consistent with other entities constructors
+     * @param age the age of the grass, grass doesn't grow old
      */
     public Grass(World world, int x, int y, int age) {
-        super(world, x, y, health, grassImage);
+        //the health sheep can get by eating grass
+        super(world, x, y, world.getConfig().getGrassHealth(), age);
     }
 
     /**
-     * Grass might grow.
+     * Construct the Grass object of grass that is already in the given world, e.g. loaded from a checkpoint.
+     *
+     * @param world the World where this grass lives.
+     * @param slot the slot this grass lives in
      */
-    @Override
-    public void act(){
-        //grass has a 10% chance to try to spread to a neighbouring tile.
-        if(Simulator.getRandomInt(1, 11) == 1){
-            int x = getX();
-            int y = getY();
-            switch (Simulator.getRandomInt(0, 4)){
-                case 0: x++; break;
-                case 1: y++; break;
-                case 2: x--; break;
-                case 3: y--; break;
-            }
-            //spawn only if the tile is empty and not out of bounds
-            if(getWorld().isValidLocation(x, y) && getWorld().getOneEntityAt(x, y, Grass.class) == null){
-                new Grass(getWorld(), x, y, 10);
-            }
-        }
+    Grass(World world, int slot) {
+        super(world, slot);
     }
 
     /**
@@ -0,0 +1,322 @@
+package simulation;
+
+import java.io.IOException;
+
+/**
+ * Where the grass is, one bit per cell, and which of it can still spread.
+ *
+ * Grass used to take a turn per blade: every blade drew a random number every tick, and nine times out of
+ * ten did nothing with it. In a meadow that has grown over, the tenth time was wasted too, because all
+ * neighbours already had grass. Now only the frontier takes part: the cells with grass that have at least
+ * one neighbour inside the World, without a fence and without grass. The frontier is a second BitGrid that
+ * is kept up to date whenever grass or a fence comes or goes, so a full meadow costs nothing.
+ *
+ * Every frontier cell still tries to spread with a chance of 1 in 10 per tick, to a random one of its 4
+ * neighbours, like a blade did. But instead of asking every cell every tick, a cell draws how many ticks
+ * it waits until it tries (a geometric distribution, so it comes out the same) and asks the TimingWheel to
+ * wake it up then. A tick only touches the cells whose turn it is, in cell order, so the cost follows the
+ * number of tries, not the amount of grass. A cell that leaves the frontier keeps its wake-up, which is
+ * dropped when it comes, or used if the cell is back on the frontier by then.
+ *
+ * Every cell draws from streams of its own for the tick (see Randomizer), so what happens only depends
+ * on where the grass is and when the cells wake up, not on the order things happened in.
+ *
+ * The Grass entities stay, they are what sheep eat and what listeners and checkpoints see. The World keeps
+ * this field in step with them.
+ *
+ * @author Layton Zhou
+ */
+public class GrassField {
+
+    // the chance of a frontier cell to try to spread in a tick, and the log of the chance that it doesn't
+    private static final double SPREAD_CHANCE = 0.1;
+    private static final double LOG_STAY = Math.log(1 - SPREAD_CHANCE);
+    // mixed into the seed of the World for the streams of the cells, so they don't clash with the entities
+    private static final long SPREAD_SALT = 0x7370726561646CL;
+    private static final long JOIN_SALT = 0x6A6F696EL;
+    // the number of ticks the wheel looks ahead, waits of more than this are very rare
+    private static final int WHEEL_SLOTS = 128;
+
+    private final World world;
+    private final int rows;
+    private final int cols;
+
+    // the cells with grass and the ones of them that can spread
+    private final BitGrid grass;
+    private final BitGrid frontier;
+    // the cells that have a wake-up on the wheel
+    private final BitGrid scheduled;
+    private final TimingWheel wheel = new TimingWheel(WHEEL_SLOTS);
+
+    // the streams of a cell that wakes up, and of a cell that joins the frontier
+    private final long spreadSeed;
+    private final long joinSeed;
+    private final Randomizer spreadRandom;
+    private final Randomizer joinRandom;
+    // the first tick whose wake-ups haven't been taken off the wheel yet
+    private long nextTick;
+
+    private int count;
+    private int frontierCount;
+
+    /**
+     * Creates an empty field for a World.
+     *
+     * @param world the World
+     */
+    public GrassField(World world){
+        this.world = world;
+        this.rows = world.getRows();
+        this.cols = world.getCols();
+        boolean offHeap = world.getConfig().isOffHeap();
+        grass = new BitGrid(rows, cols, offHeap);
+        frontier = new BitGrid(rows, cols, offHeap);
+        scheduled = new BitGrid(rows, cols, offHeap);
+        spreadSeed = Randomizer.mix(world.getSeed() ^ SPREAD_SALT);
+        joinSeed = Randomizer.mix(world.getSeed() ^ JOIN_SALT);
+        spreadRandom = new Randomizer(spreadSeed, 0);
+        joinRandom = new Randomizer(joinSeed, 0);
+    }
+
+    /**
+     * Checks if there is grass at the given location.
+     *
+     * @param x the x-coordinate, must be inside the World
+     * @param y the y-coordinate, must be inside the World
+     * @return true if there is grass
+     */
+    public boolean has(int x, int y){
+        return grass.get(x * cols + y);
+    }
+
+    /**
+     * Returns the number of cells with grass.
+     *
+     * @return the number of cells
+     */
+    public int getCount(){
+        return count;
+    }
+
+    /**
+     * Returns the number of cells with grass that could spread.
+     *
+     * @return the number of frontier cells
+     */
+    public int getFrontierCount(){
+        return frontierCount;
+    }
+
+    /**
+     * Returns the number of wake-ups that are waiting, some of them for cells that left the frontier.
+     *
+     * @return the number of wake-ups
+     */
+    public int getPendingCount(){
+        return wheel.size();
+    }
+
+    /**
+     * Marks a cell as grown over.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     */
+    void add(int x, int y){
+        int cell = x * cols + y;
+        if(grass.get(cell)){
+            return;
+        }
+        grass.set(cell);
+        count++;
+        refreshAround(x, y);
+    }
+
+    /**
+     * Marks a cell as bare.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     */
+    void remove(int x, int y){
+        int cell = x * cols + y;
+        if(!grass.get(cell)){
+            return;
+        }
+        grass.clear(cell);
+        count--;
+        refreshAround(x, y);
+    }
+
+    /**
+     * Updates the frontier around a cell whose fence was put up or taken down.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     */
+    void fenceChanged(int x, int y){
+        refreshAround(x, y);
+    }
+
+    /**
+     * Marks a cell as grown over without updating the frontier, for filling a whole field at once. Call
+     * rebuild afterwards.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     */
+    void mark(int x, int y){
+        grass.set(x * cols + y);
+    }
+
+    /**
+     * Counts the grass and works out the whole frontier again from the grass bits. Nothing is scheduled,
+     * the wake-ups are read with readFrom.
+     */
+    void rebuild(){
+        count = grass.count();
+        frontierCount = 0;
+        for(int x = 0; x < rows; x++){
+            for(int y = 0; y < cols; y++){
+                boolean front = isFrontier(x, y);
+                frontier.put(x * cols + y, front);
+                if(front){
+                    frontierCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Lets the cells whose turn it is spread: every one that is still on the frontier grows grass on a
+     * random neighbour if the neighbour is a valid location without grass, and waits for its next turn.
+     *
+     * @param tick the tick that is running
+     * @return the number of cells that woke up
+     */
+    int spread(long tick){
+        int n = wheel.drain(tick);
+        nextTick = tick + 1;
+        for(int i = 0; i < n; i++){
+            int cell = wheel.getReady(i);
+            scheduled.clear(cell);
+            if(!frontier.get(cell)){
+                continue;
+            }
+            spreadRandom.reset(spreadSeed, cell, tick);
+            trySpread(cell);
+            if(frontier.get(cell)){
+                schedule(cell, tick + 1 + nextWait(spreadRandom));
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Writes the wake-ups to a checkpoint, everything else follows from where the grass is.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    void writeTo(BinaryOutput out) throws IOException{
+        wheel.writeTo(out);
+    }
+
+    /**
+     * Reads the wake-ups writeTo wrote.
+     *
+     * @param in where to read from
+     * @throws IOException if the checkpoint is broken
+     */
+    void readFrom(WorldCheckpoint.Input in) throws IOException{
+        scheduled.clear();
+        for(int cell : wheel.readFrom(in)){
+            if(cell < 0 || cell >= rows * cols){
+                throw in.corrupt("grass wakes up cell " + cell);
+            }
+            scheduled.set(cell);
+        }
+        nextTick = world.getTick();
+    }
+
+    /**
+     * Grows grass on a random neighbour of a cell, if there is room.
+     */
+    private void trySpread(int cell){
+        int x = cell / cols;
+        int y = cell % cols;
+        switch (spreadRandom.nextInt(4)){
+            case 0: x++; break;
+            case 1: y++; break;
+            case 2: x--; break;
+            case 3: y--; break;
+        }
+        if(isEmpty(x, y)){
+            SpeciesDescriptor.GRASS.spawn(world, x, y, 10);
+        }
+    }
+
+    /**
+     * Puts a cell on the wheel.
+     */
+    private void schedule(int cell, long tick){
+        scheduled.set(cell);
+        wheel.schedule(cell, tick);
+    }
+
+    /**
+     * Draws the number of ticks a frontier cell doesn't try to spread before the tick it does.
+     */
+    private static long nextWait(Randomizer random){
+        // 1 - nextDouble is in (0, 1], so the log is never infinite
+        return (long) (Math.log(1 - random.nextDouble()) / LOG_STAY);
+    }
+
+    /**
+     * Updates the frontier bits of a cell and its neighbours after the grass of the cell changed.
+     */
+    private void refreshAround(int x, int y){
+        refresh(x, y);
+        refresh(x + 1, y);
+        refresh(x, y + 1);
+        refresh(x - 1, y);
+        refresh(x, y - 1);
+    }
+
+    /**
+     * Updates the frontier bit of a cell, and gives a cell that joins the frontier its first turn. Grass
+     * that grows after the frontier spread in a tick waits until the next tick, like a newborn Entity.
+     */
+    private void refresh(int x, int y){
+        if(x < 0 || x >= rows || y < 0 || y >= cols){
+            return;
+        }
+        int cell = x * cols + y;
+        boolean front = isFrontier(x, y);
+        if(front == frontier.get(cell)){
+            return;
+        }
+        frontier.put(cell, front);
+        frontierCount += front ? 1 : -1;
+        if(front && !scheduled.get(cell)){
+            long tick = world.getTick();
+            joinRandom.reset(joinSeed, cell, tick);
+            schedule(cell, Math.max(tick, nextTick) + nextWait(joinRandom));
+        }
+    }
+
+    /**
+     * Checks if a cell has grass and room to spread.
+     */
+    private boolean isFrontier(int x, int y){
+        return grass.get(x * cols + y)
+                && (isEmpty(x + 1, y) || isEmpty(x, y + 1) || isEmpty(x - 1, y) || isEmpty(x, y - 1));
+    }
+
+    /**
+     * Checks if grass could grow at a location.
+     */
+    private boolean isEmpty(int x, int y){
+        return world.isValidLocation(x, y) && !grass.get(x * cols + y);
+    }
+}
@@ -0,0 +1,146 @@
+package simulation;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Makes the buffers the per-cell grids of a World live in, on the heap or outside of it.
+ *
+ * A grid outside of the heap is a direct buffer: the garbage collector never has to look at it or copy it,
+ * and a huge World doesn't need a huge heap. A direct buffer holds at most 2 GB, so an int per cell is only
+ * possible off the heap for up to 512 million cells.
+ *
+ * @author Layton Zhou
+ */
+final class GridBuffers {
+
+    // the number of values fill puts at once into a buffer outside of the heap
+    private static final int FILL_CHUNK = 4096;
+    // what clearing puts, made once so clearing a grid every tick doesn't allocate
+    private static final byte[] ZERO_BYTES = new byte[FILL_CHUNK];
+    private static final int[] ZERO_INTS = new int[FILL_CHUNK];
+    private static final long[] ZERO_LONGS = new long[FILL_CHUNK];
+
+    private GridBuffers(){
+    }
+
+    /**
+     * Makes a buffer of bytes, all 0.
+     *
+     * @param count the number of bytes
+     * @param offHeap true to put it outside of the heap
+     * @return the buffer
+     */
+    static ByteBuffer bytes(long count, boolean offHeap){
+        return offHeap ? direct(count, 1) : ByteBuffer.allocate(checked(count, 1));
+    }
+
+    /**
+     * Makes a buffer of ints, all 0.
+     *
+     * @param count the number of ints
+     * @param offHeap true to put it outside of the heap
+     * @return the buffer
+     */
+    static IntBuffer ints(long count, boolean offHeap){
+        return offHeap ? direct(count, 4).asIntBuffer() : IntBuffer.allocate(checked(count, 1));
+    }
+
+    /**
+     * Makes a buffer of longs, all 0.
+     *
+     * @param count the number of longs
+     * @param offHeap true to put it outside of the heap
+     * @return the buffer
+     */
+    static LongBuffer longs(long count, boolean offHeap){
+        return offHeap ? direct(count, 8).asLongBuffer() : LongBuffer.allocate(checked(count, 1));
+    }
+
+    /**
+     * Sets every byte of a buffer. A heap buffer is filled in its array, a direct one a chunk at a time;
+     * only a fill with something else than 0 allocates the chunk.
+     *
+     * @param buffer the buffer
+     * @param value the value
+     */
+    static void fill(ByteBuffer buffer, byte value){
+        if(buffer.hasArray()){
+            Arrays.fill(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.capacity(), value);
+            return;
+        }
+        byte[] chunk = ZERO_BYTES;
+        if(value != 0){
+            chunk = new byte[FILL_CHUNK];
+            Arrays.fill(chunk, value);
+        }
+        ByteBuffer target = buffer.duplicate().clear();
+        while(target.hasRemaining()){
+            target.put(chunk, 0, Math.min(chunk.length, target.remaining()));
+        }
+    }
+
+    /**
+     * Sets every int of a buffer, like fill of a ByteBuffer.
+     *
+     * @param buffer the buffer
+     * @param value the value
+     */
+    static void fill(IntBuffer buffer, int value){
+        if(buffer.hasArray()){
+            Arrays.fill(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.capacity(), value);
+            return;
+        }
+        int[] chunk = ZERO_INTS;
+        if(value != 0){
+            chunk = new int[FILL_CHUNK];
+            Arrays.fill(chunk, value);
+        }
+        IntBuffer target = buffer.duplicate().clear();
+        while(target.hasRemaining()){
+            target.put(chunk, 0, Math.min(chunk.length, target.remaining()));
+        }
+    }
+
+    /**
+     * Sets every long of a buffer, like fill of a ByteBuffer.
+     *
+     * @param buffer the buffer
+     * @param value the value
+     */
+    static void fill(LongBuffer buffer, long value){
+        if(buffer.hasArray()){
+            Arrays.fill(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.capacity(), value);
+            return;
+        }
+        long[] chunk = ZERO_LONGS;
+        if(value != 0){
+            chunk = new long[FILL_CHUNK];
+            Arrays.fill(chunk, value);
+        }
+        LongBuffer target = buffer.duplicate().clear();
+        while(target.hasRemaining()){
+            target.put(chunk, 0, Math.min(chunk.length, target.remaining()));
+        }
+    }
+
+    /**
+     * Makes a direct buffer of count values of the given width, in the order of this machine.
+     */
+    private static ByteBuffer direct(long count, int width){
+        return ByteBuffer.allocateDirect(checked(count, width)).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Returns count times width, if a buffer can be that big.
+     */
+    private static int checked(long count, int width){
+        if(count < 0 || count * width > Integer.MAX_VALUE - 8){
+            throw new IllegalArgumentException("grid too big for a buffer: " + count + " values of " + width + " bytes");
+        }
+        return (int) (count * width);
+    }
+}
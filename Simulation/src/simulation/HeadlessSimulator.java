@@ -0,0 +1,129 @@
+package simulation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Runs the Simulation without a window, as fast as it can go.
+ *
+ * Usage: HeadlessSimulator [ticks=1000] [wolves=10] [sheep=20] [grass=100] [rows=16] [cols=16] [fences=50] [seed=...]
+ *                          [restore=file] [checkpoint=file] [every=0] [telemetry=file] [profile=seconds]
+ *
+ * A run with the same arguments and seed always ends the same way, the seed is printed so a run can be repeated.
+ *
+ * With restore the run goes on from a checkpoint instead of a new World, the World settings and the number
+ * of animals are then ignored. With checkpoint the World is saved at the end of the run, and every given
+ * number of ticks if every is more than 0 (see WorldCheckpoint). With telemetry the events and population
+ * of every tick are streamed to a file (see TelemetryWriter). With profile the time of every phase of the
+ * tick is measured and summed up every given number of seconds and at the end (see TickProfiler).
+ *
+ * @author Layton Zhou
+ */
+public class HeadlessSimulator {
+
+    /**
+     * Runs the given number of ticks and reports how fast they went.
+     *
+     * @param args command line arguments, "key=value" pairs, see the class comment
+     * @throws IOException if the checkpoint to start from can't be loaded or the telemetry can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        int ticks = intArg(args, "ticks", 1000);
+        String restore = stringArg(args, "restore", null);
+        String checkpoint = stringArg(args, "checkpoint", null);
+        int every = intArg(args, "every", 0);
+        String telemetryFile = stringArg(args, "telemetry", null);
+
+        World world = restore != null ? WorldCheckpoint.load(Paths.get(restore)) : new World(WorldConfig.parse(args));
+        TelemetryWriter telemetry = null;
+        if(telemetryFile != null){
+            telemetry = new TelemetryWriter(world, Paths.get(telemetryFile), 256);
+        }
+        TickProfiler profiler = null;
+        if(intArg(args, "profile", 0) > 0){
+            profiler = new TickProfiler(intArg(args, "profile", 0), System.out);
+            profiler.register();
+            world.setProfiler(profiler);
+        }
+        if(restore == null){
+            //add some entities
+            world.addRandomEntities(intArg(args, "wolves", 10), SpeciesDescriptor.WOLF);
+            world.addRandomEntities(intArg(args, "sheep", 20), SpeciesDescriptor.SHEEP);
+            world.addRandomEntities(intArg(args, "grass", 100), SpeciesDescriptor.GRASS);
+        }
+
+        long start = System.nanoTime();
+        for(int i = 0; i < ticks; i++){
+            world.act();
+            if(checkpoint != null && every > 0 && (i + 1) % every == 0){
+                save(world, Paths.get(checkpoint));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if(profiler != null){
+            profiler.publish();
+        }
+        if(checkpoint != null){
+            save(world, Paths.get(checkpoint));
+        }
+        if(telemetry != null){
+            telemetry.close();
+            if(telemetry.getDroppedTicks() > 0){
+                System.out.println("telemetry dropped " + telemetry.getDroppedTicks() + " ticks");
+            }
+        }
+
+        System.out.println(ticks + " ticks in " + elapsed / 1000000 + " ms ("
+                + (long) (ticks / (elapsed / 1e9)) + " ticks/s), "
+                + world.getEntityCount() + " entities left, seed=" + world.getSeed());
+        world.close();
+    }
+
+    /**
+     * Reads a "key=value" argument.
+     *
+     * @param args the command line arguments
+     * @param key the key to look for
+     * @param defaultValue the value if the key isn't there
+     * @return the value of the key
+     */
+    static int intArg(String[] args, String key, int defaultValue){
+        String value = stringArg(args, key, null);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Reads a "key=value" argument.
+     *
+     * @param args the command line arguments
+     * @param key the key to look for
+     * @param defaultValue the value if the key isn't there
+     * @return the value of the key
+     */
+    static String stringArg(String[] args, String key, String defaultValue){
+        for(String arg : args){
+            if(arg.startsWith(key + "=")){
+                return arg.substring(key.length() + 1);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Saves a World and says so, a failed save is reported but doesn't stop the run.
+     *
+     * @param world the World, between two ticks
+     * @param file the checkpoint file
+     */
+    static void save(World world, Path file){
+        long start = System.nanoTime();
+        try {
+            WorldCheckpoint.save(world, file);
+            System.out.println("saved tick " + world.getTick() + " to " + file + " in "
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+        } catch (IOException e){
+            System.err.println("could not save to " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Counts how often every duration occurs, with buckets that get wider as the durations get longer, like
+ * HdrHistogram: every power of two is split into 32 buckets, so a percentile is never more than about 3%
+ * off, from nanoseconds to centuries, in a fixed array of 1888 counts. Recording is an array increment.
+ *
+ * Not thread-safe, one thread records and the copies are handed to everyone else.
+ *
+ * @author Layton Zhou
+ */
+final class LatencyHistogram {
+
+    // every power of two above 2 * SUB_COUNT is split into SUB_COUNT buckets
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final long[] counts;
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Creates an empty histogram.
+     */
+    LatencyHistogram(){
+        counts = new long[BUCKETS];
+    }
+
+    /**
+     * Creates a copy of a histogram.
+     */
+    private LatencyHistogram(LatencyHistogram other){
+        counts = other.counts.clone();
+        count = other.count;
+        sum = other.sum;
+        min = other.min;
+        max = other.max;
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param value the duration, negative durations count as 0
+     */
+    void record(long value){
+        if(value < 0){
+            value = 0;
+        }
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if(value < min){
+            min = value;
+        }
+        if(value > max){
+            max = value;
+        }
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     */
+    long getCount(){
+        return count;
+    }
+
+    /**
+     * Returns the sum of all recorded durations.
+     */
+    long getSum(){
+        return sum;
+    }
+
+    /**
+     * Returns the mean of the recorded durations, 0 if there are none.
+     */
+    double getMean(){
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the longest recorded duration, 0 if there are none.
+     */
+    long getMax(){
+        return max;
+    }
+
+    /**
+     * Returns the shortest recorded duration, 0 if there are none.
+     */
+    long getMin(){
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the duration that the given share of the recorded durations doesn't exceed, rounded up to the
+     * end of its bucket.
+     *
+     * @param percentile from 0 to 100
+     * @return the duration, 0 if nothing was recorded
+     */
+    long getPercentile(double percentile){
+        if(count == 0){
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += counts[i];
+            if(seen >= wanted){
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Forgets everything that was recorded.
+     */
+    void reset(){
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+     * Returns a copy that doesn't change when this one does.
+     */
+    LatencyHistogram copy(){
+        return new LatencyHistogram(this);
+    }
+
+    /**
+     * Returns the bucket of a duration.
+     */
+    private static int index(long value){
+        if(value < 2 * SUB_COUNT){
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    /**
+     * Returns the longest duration that goes into a bucket.
+     */
+    private static long highestValue(int index){
+        if(index < 2 * SUB_COUNT){
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long sub = index % SUB_COUNT + SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+}
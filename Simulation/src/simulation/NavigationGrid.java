@@ -0,0 +1,185 @@
+package simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Which cells can be walked on, worked out once instead of on every step.
+ *
+ * A cell is passable if there is no fence on it. The grid keeps a BitGrid for that, and for every
+ * cell a mask of the neighbours that are passable, so an animal that looks around checks one byte instead
+ * of the bounds and the fences four times. Both are updated when a fence comes or goes, only around the
+ * cell that changed.
+ *
+ * The bits and masks are kept in buffers, so they can live outside of the heap (see GridBuffers) or be
+ * mapped straight from a TerrainFile.
+ *
+ * @author Layton Zhou
+ */
+public class NavigationGrid {
+
+    /** the bit of the neighbour at x + 1 in a mask */
+    public static final int DOWN = 1;
+    /** the bit of the neighbour at y + 1 in a mask */
+    public static final int RIGHT = 2;
+    /** the bit of the neighbour at x - 1 in a mask */
+    public static final int UP = 4;
+    /** the bit of the neighbour at y - 1 in a mask */
+    public static final int LEFT = 8;
+
+    private final int rows;
+    private final int cols;
+
+    // the cells without a fence
+    private final BitGrid passable;
+    // the passable neighbours of every cell
+    private final ByteBuffer masks;
+
+    /**
+     * Creates a grid without fences on the heap.
+     *
+     * @param rows the number of possible x-coordinates
+     * @param cols the number of possible y-coordinates
+     */
+    public NavigationGrid(int rows, int cols){
+        this(rows, cols, false);
+    }
+
+    /**
+     * Creates a grid without fences.
+     *
+     * @param rows the number of possible x-coordinates
+     * @param cols the number of possible y-coordinates
+     * @param offHeap true to keep the grid outside of the heap
+     */
+    public NavigationGrid(int rows, int cols, boolean offHeap){
+        this(rows, cols, GridBuffers.longs(BitGrid.words(rows, cols), offHeap),
+                GridBuffers.bytes((long) rows * cols, offHeap));
+        passable.setAll();
+        for(int x = 0; x < rows; x++){
+            for(int y = 0; y < cols; y++){
+                updateMask(x, y);
+            }
+        }
+    }
+
+    /**
+     * Creates a grid on buffers that already hold the bits and masks, e.g. from a TerrainFile.
+     *
+     * @param rows the number of possible x-coordinates
+     * @param cols the number of possible y-coordinates
+     * @param passable the words of a BitGrid of the passable cells
+     * @param masks one byte per cell
+     */
+    NavigationGrid(int rows, int cols, LongBuffer passable, ByteBuffer masks){
+        this.rows = rows;
+        this.cols = cols;
+        this.passable = new BitGrid(rows, cols, passable);
+        this.masks = masks;
+    }
+
+    /**
+     * Checks if a location is inside the World and has no fence.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return true if the location can be walked on
+     */
+    public boolean isPassable(int x, int y){
+        return x >= 0 && x < rows && y >= 0 && y < cols && isPassable(x * cols + y);
+    }
+
+    /**
+     * Checks if a cell has no fence.
+     *
+     * @param cell the cell number, must be inside the World
+     * @return true if the cell can be walked on
+     */
+    public boolean isPassable(int cell){
+        return passable.get(cell);
+    }
+
+    /**
+     * Returns the neighbours of a cell that can be walked on.
+     *
+     * @param cell the cell number
+     * @return DOWN, RIGHT, UP and LEFT or-ed together
+     */
+    public int getMask(int cell){
+        return masks.get(cell);
+    }
+
+    /**
+     * Returns the neighbour of a cell in a direction. The caller must know it is inside the World, e.g.
+     * from the mask.
+     *
+     * @param cell the cell number
+     * @param direction DOWN, RIGHT, UP or LEFT
+     * @return the cell number of the neighbour
+     */
+    public int neighbour(int cell, int direction){
+        switch (direction){
+            case DOWN: return cell + cols;
+            case RIGHT: return cell + 1;
+            case UP: return cell - cols;
+            default: return cell - 1;
+        }
+    }
+
+    /**
+     * Puts up or takes down a fence.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param fence true for a fence
+     */
+    void setFence(int x, int y, boolean fence){
+        int cell = x * cols + y;
+        passable.put(cell, !fence);
+        updateMask(x + 1, y);
+        updateMask(x, y + 1);
+        updateMask(x - 1, y);
+        updateMask(x, y - 1);
+    }
+
+    /**
+     * Writes the passable bits and then the masks, the way a TerrainFile keeps them.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    void writeTo(BinaryOutput out) throws IOException{
+        passable.writeTo(out);
+        byte[] bytes = new byte[1 << 15];
+        ByteBuffer mask = masks.duplicate().clear();
+        while(mask.hasRemaining()){
+            int n = Math.min(bytes.length, mask.remaining());
+            mask.get(bytes, 0, n);
+            out.writeBytes(bytes, n);
+        }
+    }
+
+    /**
+     * Works out the mask of a cell again.
+     */
+    private void updateMask(int x, int y){
+        if(x < 0 || x >= rows || y < 0 || y >= cols){
+            return;
+        }
+        int mask = 0;
+        if(isPassable(x + 1, y)){
+            mask |= DOWN;
+        }
+        if(isPassable(x, y + 1)){
+            mask |= RIGHT;
+        }
+        if(isPassable(x - 1, y)){
+            mask |= UP;
+        }
+        if(isPassable(x, y - 1)){
+            mask |= LEFT;
+        }
+        masks.put(x * cols + y, (byte) mask);
+    }
+}
@@ -0,0 +1,122 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of which cells are taken during one tick, e.g. where the sheep will be after they act.
+ *
+ * The World used to allocate a new boolean[][] for this every tick. This grid is allocated once and is a
+ * BitGrid: a cell takes one bit instead of a byte, and an animal that looks for a free neighbour reads all
+ * four of them at once (see freeNeighbours).
+ *
+ * The grid remembers which words of the BitGrid got their first bit since it was last cleared, so clearing
+ * it only wipes those and costs as much as the animals that took cells, not the size of the World. Only if
+ * a lot of the World was taken is it wiped as a whole, 64 cells at a time.
+ *
+ * @author Layton Zhou
+ */
+public class OccupancyGrid {
+
+    //number of cells in a column, used to turn (x, y) into a cell number
+    private final int cols;
+    //the cells that are taken
+    private final BitGrid taken;
+    //the words of taken that have a bit set, forgotten once there are more than maxDirty of them
+    private int[] dirty = new int[64];
+    private int dirtyCount;
+    private final int maxDirty;
+    //true if the list of words was forgotten and clear has to wipe everything
+    private boolean overflow;
+
+    /**
+     * Creates an empty grid for a World of the given size on the heap.
+     *
+     * @param rows the number of possible x-coordinates
+     * @param cols the number of possible y-coordinates
+     */
+    public OccupancyGrid(int rows, int cols){
+        this(rows, cols, false);
+    }
+
+    /**
+     * Creates an empty grid for a World of the given size.
+     *
+     * @param rows the number of possible x-coordinates
+     * @param cols the number of possible y-coordinates
+     * @param offHeap true to keep the grid outside of the heap
+     */
+    public OccupancyGrid(int rows, int cols, boolean offHeap){
+        this.cols = cols;
+        this.taken = new BitGrid(rows, cols, offHeap);
+        this.maxDirty = BitGrid.words(rows, cols) / 8 + 64;
+    }
+
+    /**
+     * Marks every cell as free.
+     */
+    public void clear(){
+        if(overflow){
+            taken.clear();
+            overflow = false;
+        }else{
+            for(int i = 0; i < dirtyCount; i++){
+                taken.clearWord(dirty[i]);
+            }
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Checks if a cell is taken.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return true if the cell is taken
+     */
+    public boolean isOccupied(int x, int y){
+        return taken.get(x * cols + y);
+    }
+
+    /**
+     * Checks if a cell is taken.
+     *
+     * @param cell the cell number, see World.toCell
+     * @return true if the cell is taken
+     */
+    public boolean isOccupied(int cell){
+        return taken.get(cell);
+    }
+
+    /**
+     * Returns the neighbours of a cell that are free.
+     *
+     * @param cell the cell number
+     * @param mask the neighbours to look at, e.g. the passable ones from NavigationGrid.getMask
+     * @return the directions of the mask whose cell is not taken
+     */
+    public int freeNeighbours(int cell, int mask){
+        return mask & ~taken.neighbours(cell, mask);
+    }
+
+    /**
+     * Marks a cell as taken.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     */
+    public void occupy(int x, int y){
+        int cell = x * cols + y;
+        if(!taken.setFirstInWord(cell) || overflow){
+            return;
+        }
+        if(dirtyCount == maxDirty){
+            // cheaper to wipe everything than to go through this many words
+            overflow = true;
+            return;
+        }
+        if(dirtyCount == dirty.length){
+            dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+        }
+        dirty[dirtyCount++] = cell >>> 6;
+    }
+}
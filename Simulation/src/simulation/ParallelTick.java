@@ -0,0 +1,262 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Runs the acting part of a tick on several threads.
+ *
+ * Wolves still act before sheep, but within a species every member decides at the same time, in two
+ * phases (grass doesn't take turns, it spreads from the edges of its patches, see GrassField):
+ * <ol>
+ *     <li>propose: the grid is cut into square tiles and the tiles are handed out to a ForkJoinPool.
+ *     Every member looks at the World as it was when the phase started and picks what it wants to do
+ *     (eat, move to a cell, or die because it is stuck). Nothing is changed yet, the member only claims
+ *     its target cell.</li>
+ *     <li>commit: the members go through their plans one by one, in the order of the species' member
+ *     list. Moves, meals, births and deaths happen here.</li>
+ * </ol>
+ * A claim is an atomic minimum on the cell: the member that comes first in the member list wins, no
+ * matter which thread got there first. A member that loses its claim, or whose cell was taken in the
+ * meantime by a member before it, wanders during the commit instead, against the grid as it is by then,
+ * just like in the one-by-one tick. So two animals of a species never end up on the same cell. Every member draws its random numbers from its own stream (see
+ * Randomizer), so the outcome doesn't depend on the number of threads or on timing.
+ *
+ * @author Layton Zhou
+ */
+public class ParallelTick {
+
+    // what a member decided to do
+    private static final byte NOTHING = 0;
+    private static final byte EAT = 1;
+    private static final byte MOVE = 2;
+    private static final byte STUCK = 3;
+
+    // a tile with fewer members than this is not worth splitting further
+    private static final int MIN_TASK_SIZE = 256;
+
+    private final World world;
+    private final EntityStore store;
+    private final ForkJoinPool pool;
+
+    // size of a tile and number of tiles in a column of tiles
+    private final int tileSize;
+    private final int tileCols;
+    private final int tileCount;
+
+    // the lowest member index that claimed every cell, Integer.MAX_VALUE if nobody did
+    private final AtomicIntegerArray claims;
+
+    // one generator per thread of the pool, pointed at the stream of every member before it proposes
+    private final ThreadLocal<Randomizer> randoms;
+
+    // the plan of every member, indexed by the position in the member list
+    private byte[] plan = new byte[1024];
+    private int[] target = new int[1024];
+    private int[] cost = new int[1024];
+
+    // the members sorted by tile, tileStart[t] is where tile t starts in order
+    private int[] order = new int[1024];
+    private final int[] tileStart;
+    // where the next member of every tile goes while sorting
+    private final int[] tileNext;
+
+    /**
+     * Creates the parallel tick for a World.
+     *
+     * @param world the World
+     * @param threads the number of threads to use
+     */
+    public ParallelTick(World world, int threads){
+        this.world = world;
+        this.store = world.getStore();
+        this.pool = new ForkJoinPool(threads);
+        this.tileSize = world.getConfig().getTileSize();
+        int tileRows = (world.getRows() + tileSize - 1) / tileSize;
+        this.tileCols = (world.getCols() + tileSize - 1) / tileSize;
+        this.tileCount = tileRows * tileCols;
+        this.tileStart = new int[tileCount + 1];
+        this.tileNext = new int[tileCount];
+        this.claims = new AtomicIntegerArray(world.getRows() * world.getCols());
+        for(int i = 0; i < claims.length(); i++){
+            claims.set(i, Integer.MAX_VALUE);
+        }
+        this.randoms = ThreadLocal.withInitial(() -> new Randomizer(world.getSeed(), 0));
+    }
+
+    /**
+     * Lets every acting wolf or sheep take its turn.
+     *
+     * @param kind the species, WOLF or SHEEP
+     * @param grid the cells taken by animals of that species that stay to eat
+     */
+    public void actAnimals(byte kind, OccupancyGrid grid){
+        int n = prepare(kind);
+        pool.invoke(new Propose(kind, grid, 0, tileCount));
+        for(int i = 0; i < n; i++){
+            int slot = store.getMember(kind, i);
+            if(plan[i] == NOTHING || store.getState(slot) != EntityStore.ALIVE){
+                continue;
+            }
+            Animal animal = (Animal) store.getEntity(slot);
+            if(plan[i] == STUCK){
+                // it couldn't find a valid location to wander to
+                animal.destroy(DeathCause.STUCK);
+                continue;
+            }
+            boolean won = claims.get(target[i]) == i;
+            if(plan[i] == EAT && won){
+                animal.eat(animal.getCurrentFood());
+                //reproduce only if it's an adult
+                if(animal.isAdult())
+                    animal.breed();
+            }else if(plan[i] == MOVE && won && !grid.isOccupied(target[i])){
+                animal.moveTo(world.cellX(target[i]), world.cellY(target[i]));
+                animal.decreaseHealth(cost[i]);
+            }else{
+                // somebody before it in the member list wanted the same cell or already stands on it,
+                // so it picks again among the cells that are still free, it is stuck if there are none
+                world.startTurn(world.getRandom(), slot);
+                animal.wander(grid);
+            }
+            animal.endTurn(grid);
+        }
+        releaseClaims(n);
+    }
+
+    /**
+     * Makes room for the plans and sorts the members of a species by tile.
+     *
+     * @param kind the species
+     * @return the number of members
+     */
+    private int prepare(byte kind){
+        int n = store.getMemberCount(kind);
+        if(plan.length < n){
+            int capacity = Math.max(n, plan.length * 2);
+            plan = new byte[capacity];
+            target = new int[capacity];
+            cost = new int[capacity];
+            order = new int[capacity];
+        }
+        Arrays.fill(plan, 0, n, NOTHING);
+        // counting sort by tile, members stay in member list order within a tile
+        Arrays.fill(tileStart, 0);
+        for(int i = 0; i < n; i++){
+            tileStart[tileOf(store.getMember(kind, i)) + 1]++;
+        }
+        for(int t = 0; t < tileCount; t++){
+            tileStart[t + 1] += tileStart[t];
+        }
+        System.arraycopy(tileStart, 0, tileNext, 0, tileCount);
+        for(int i = 0; i < n; i++){
+            order[tileNext[tileOf(store.getMember(kind, i))]++] = i;
+        }
+        return n;
+    }
+
+    /**
+     * Gives back every cell that was claimed in this phase.
+     *
+     * @param n the number of members
+     */
+    private void releaseClaims(int n){
+        for(int i = 0; i < n; i++){
+            if(plan[i] == EAT || plan[i] == MOVE){
+                claims.set(target[i], Integer.MAX_VALUE);
+            }
+        }
+    }
+
+    /**
+     * Returns the tile a slot is standing in.
+     */
+    private int tileOf(int slot){
+        return (store.getX(slot) / tileSize) * tileCols + store.getY(slot) / tileSize;
+    }
+
+    /**
+     * Stops the threads of the pool. The tick can't run after this.
+     */
+    void close(){
+        pool.shutdown();
+    }
+
+    /**
+     * Claims a cell for a member, the lowest member index wins.
+     */
+    private void claim(int cell, int index){
+        int current = claims.get(cell);
+        while(index < current && !claims.compareAndSet(cell, current, index)){
+            current = claims.get(cell);
+        }
+    }
+
+    /**
+     * Proposes the plans of all members standing in a range of tiles, splitting the range if it is big.
+     */
+    private class Propose extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte kind;
+        private final OccupancyGrid grid;
+        private final int fromTile;
+        private final int toTile;
+
+        Propose(byte kind, OccupancyGrid grid, int fromTile, int toTile){
+            this.kind = kind;
+            this.grid = grid;
+            this.fromTile = fromTile;
+            this.toTile = toTile;
+        }
+
+        @Override
+        protected void compute(){
+            if(toTile - fromTile > 1 && tileStart[toTile] - tileStart[fromTile] > MIN_TASK_SIZE){
+                int middle = (fromTile + toTile) >>> 1;
+                invokeAll(new Propose(kind, grid, fromTile, middle), new Propose(kind, grid, middle, toTile));
+                return;
+            }
+            Randomizer random = randoms.get();
+            for(int k = tileStart[fromTile]; k < tileStart[toTile]; k++){
+                int i = order[k];
+                int slot = store.getMember(kind, i);
+                if(store.getState(slot) != EntityStore.ALIVE){
+                    continue;
+                }
+                world.startTurn(random, slot);
+                proposeTurn(i, (Animal) store.getEntity(slot), random);
+            }
+        }
+
+        /**
+         * The same choices as Animal.act, but only planned.
+         */
+        private void proposeTurn(int i, Animal animal, Randomizer random){
+            if(animal.isOnFood()){
+                plan[i] = EAT;
+                target[i] = world.toCell(animal.getX(), animal.getY());
+            }else{
+                int step = -1;
+                // if the animal still has a lot of health, it just wanders around, otherwise it seeks for food
+                if(!animal.isHealthy()){
+                    step = animal.pickFoodStep(grid);
+                    cost[i] = world.getConfig().getSeekCost();
+                }
+                if(step < 0){
+                    step = animal.pickWanderTarget(grid, random);
+                    cost[i] = world.getConfig().getWanderCost();
+                }
+                if(step < 0){
+                    plan[i] = STUCK;
+                    return;
+                }
+                plan[i] = MOVE;
+                target[i] = step;
+            }
+            claim(target[i], i);
+        }
+    }
+}
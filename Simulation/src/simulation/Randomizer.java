@@ -0,0 +1,145 @@
+package simulation;
+
+/**
+ * Random numbers for the simulation.
+ *
+ * A Randomizer is a counter-based generator: the n-th number of a stream is a hash of the seed of the run,
+ * the stream and n, nothing else. So every Entity can have its own stream for every tick (the stream is the
+ * id of the Entity, see World.startTurn), and the numbers it gets don't depend on who drew before it, on
+ * which thread it runs or on how many threads there are. Setting up the World (fences, the first entities)
+ * uses streams of its own.
+ *
+ * A Randomizer is not thread safe, every thread uses its own and resets it for every Entity. Resetting
+ * doesn't allocate anything.
+ *
+ * @author Layton Zhou
+ */
+public class Randomizer {
+
+    // the golden ratio, spreads consecutive counters and stream numbers over all 64 bits
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    // another odd constant, so the stream and the tick don't cancel each other out
+    private static final long TICK_STEP = 0xD1B54A32D192ED03L;
+
+    // the hash of the seed, the stream and the tick
+    private long key;
+    // the number of values drawn from the stream so far
+    private long counter;
+
+    /**
+     * Creates a generator for one stream of a run.
+     *
+     * @param seed the seed of the run
+     * @param stream the stream
+     */
+    public Randomizer(long seed, long stream){
+        reset(seed, stream, 0);
+    }
+
+    /**
+     * Switches to the start of another stream.
+     *
+     * @param seed the seed of the run
+     * @param stream the stream, e.g. the id of an Entity
+     * @param tick the tick the numbers are for
+     */
+    public void reset(long seed, long stream, long tick){
+        key = mix(mix(seed + stream * GOLDEN) + tick * TICK_STEP);
+        counter = 0;
+    }
+
+    /**
+     * Returns the next 64 random bits of the stream.
+     *
+     * @return a random long
+     */
+    public long nextLong(){
+        return mix(key + ++counter * GOLDEN);
+    }
+
+    /**
+     * Generates a random number between 0 (included) and 1 (not included), in steps of 2^-53.
+     *
+     * @return a random double
+     */
+    public double nextDouble(){
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Generates a random number between 0 (included) and bound (not included). Every number is equally likely.
+     *
+     * @param bound the upper bound, must be positive
+     * @return a random number within the given range
+     */
+    public int nextInt(int bound){
+        if(bound <= 0){
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        int r = (int) (nextLong() >>> 33);
+        int m = bound - 1;
+        if((bound & m) == 0){
+            // a power of two, take the high bits
+            return (int) ((bound * (long) r) >> 31);
+        }
+        // throw away the values at the top that would make the small numbers more likely
+        for(int u = r; u - (r = u % bound) + m < 0; u = (int) (nextLong() >>> 33));
+        return r;
+    }
+
+    /**
+     * Generates a random number between the given range [a,b).
+     *
+     * @param min the minimum number possible to generate
+     * @param max the maximum number possible to generate, not included
+     * @return a random number within the given range
+     */
+    public int getRandomInt(int min, int max){
+        if(min > max){
+            //ensure parameters are in correct order.
+            return getRandomInt(max, min);
+        }
+        return nextInt(max - min) + min;
+    }
+
+    /**
+     * Returns the hash of the stream, together with getCounter this is everything needed to continue the stream later.
+     *
+     * @return the key of the stream
+     */
+    public long getKey(){
+        return key;
+    }
+
+    /**
+     * Returns the number of values drawn from the stream so far.
+     *
+     * @return the counter
+     */
+    public long getCounter(){
+        return counter;
+    }
+
+    /**
+     * Continues a stream where it was, e.g. after loading a saved World.
+     *
+     * @param key the key of the stream, see getKey
+     * @param counter the counter of the stream, see getCounter
+     */
+    public void restore(long key, long counter){
+        this.key = key;
+        this.counter = counter;
+    }
+
+    /**
+     * Scrambles the bits of a long, the finalizer of SplitMix64. Different inputs give different outputs.
+     *
+     * @param z the value to scramble
+     * @return the scrambled value
+     */
+    public static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,7 +1,5 @@
 package simulation;
 
-import javafx.scene.image.Image;
-
 /**
  * This class represents a sheep. The logic is only partially implemented.
  *
@@ -9,12 +7,6 @@ import javafx.scene.image.Image;
  */
 public class Sheep extends Animal{
 
-    // The image for adult sheep
-    private static final Image sheepImage = new Image("images/sheep.png");
-    // The image for baby sheep
-    private static final Image baby_sheepImage = new Image("images/baby_sheep (Custom).png");
-    // The health a sheep initially has
-    private static final int health = 100;
     /**
      * Constructor for Sheep.
      *
@@ -24,7 +16,18 @@ public class Sheep extends Animal{
      * @param age the age of this Sheep
      */
     public Sheep (World world, int x, int y, int age) {
-        super(world, x, y, health, age, Grass.class, sheepImage, baby_sheepImage);
+        // The health a sheep initially has
+        super(world, x, y, world.getConfig().getSheepHealth(), age, Grass.class);
+    }
+
+    /**
+     * Constructor for a Sheep that is already in the world, e.g. one loaded from a checkpoint.
+     *
+     * @param world this Sheep's world
+     * @param slot the slot this Sheep lives in
+     */
+    Sheep (World world, int slot) {
+        super(world, slot, Grass.class);
     }
 
     /**
@@ -1,28 +1,45 @@
 package simulation;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
-import java.util.Random;
-
 /**
- * This class runs our Simulation. It also has some basic helper methods.
+ * This class runs our Simulation with a window. Use the HeadlessSimulator to run it without one.
+ *
+ * The World runs on a TickScheduler thread, the window only draws it. Keys:
+ * <ul>
+ *     <li>space: pause or resume</li>
+ *     <li>right arrow: one tick while paused</li>
+ *     <li>up and down arrows: double or halve the tick rate</li>
+ *     <li>F: fast-forward on or off</li>
+ *     <li>S: save the World to the checkpoint file</li>
+ * </ul>
  *
  * @author Mr. Smithe
  */
 public class Simulator extends Application {
 
-    private static Random random = new Random();
-
     private World world;
-    private long lastRun = 0;
+    private WorldView view;
+    private TickScheduler scheduler;
+    private TelemetryWriter telemetry;
+    //the tick rate to go back to after fast-forward
+    private double normalRate;
 
     /**
      * Launches the application.
      *
-     * @param args command line arguments
+     * @param args command line arguments, "key=value" settings of the World, e.g. rows=32 cols=32,
+     *             tps, the ticks per second (default 1, 0 for fast-forward), checkpoint, the file S saves
+     *             to (default world.checkpoint), restore, a checkpoint to start from, and telemetry, a file
+     *             to stream the events of every tick to, and profile, the seconds between two summaries of
+     *             where the time of a tick goes (off if it is not given)
      */
     public static void main(String[] args) {
         launch(args);
@@ -32,27 +49,62 @@ public class Simulator extends Application {
      * Sets up the visuals.
      *
      * @param primaryStage the Program's Stage
+     * @throws IOException if the checkpoint to start from can't be loaded or the telemetry file can't be created
      */
     @Override
-    public void start(Stage primaryStage) {
+    public void start(Stage primaryStage) throws IOException {
         //set the scene
-        world = new World();
-        Scene scene = new Scene(world.getRoot(), World.MAX_WIDTH, World.MAX_HEIGHT);
+        String[] args = getParameters().getRaw().toArray(new String[0]);
+        String restore = HeadlessSimulator.stringArg(args, "restore", null);
+        world = restore != null ? WorldCheckpoint.load(Paths.get(restore)) : new World(WorldConfig.parse(args));
+        String telemetryFile = HeadlessSimulator.stringArg(args, "telemetry", null);
+        if(telemetryFile != null){
+            telemetry = new TelemetryWriter(world, Paths.get(telemetryFile), 256);
+        }
+        int profile = HeadlessSimulator.intArg(args, "profile", 0);
+        if(profile > 0){
+            TickProfiler profiler = new TickProfiler(profile, System.out);
+            profiler.register();
+            world.setProfiler(profiler);
+        }
+        if(restore == null){
+            //add some entities
+            addRandomEntities(10, SpeciesDescriptor.WOLF);
+            addRandomEntities(20, SpeciesDescriptor.SHEEP);
+            addRandomEntities(100, SpeciesDescriptor.GRASS);
+        }
+        Path checkpoint = Paths.get(HeadlessSimulator.stringArg(args, "checkpoint", "world.checkpoint"));
 
-        //add some entities
-        addRandomEntities(10, Wolf.class);
-        addRandomEntities(20, Sheep.class);
-        addRandomEntities(100, Grass.class);
+        int tps = HeadlessSimulator.intArg(args, "tps", 1);
+        normalRate = Math.max(1, tps);
+        scheduler = new TickScheduler(world, tps);
+        // the view only draws snapshots, the world doesn't know it's there
+        view = new WorldView(world, scheduler);
+        Scene scene = new Scene(view.getRoot(), view.getWidth(), view.getHeight());
+        scene.setOnKeyPressed(event -> {
+            switch (event.getCode()){
+                case SPACE: scheduler.setPaused(!scheduler.isPaused()); break;
+                case RIGHT: scheduler.step(); break;
+                case UP: normalRate *= 2; scheduler.setTickRate(normalRate); break;
+                case DOWN: normalRate = Math.max(0.125, normalRate / 2); scheduler.setTickRate(normalRate); break;
+                case F: scheduler.setTickRate(scheduler.getTickRate() == 0 ? normalRate : 0); break;
+                case S: scheduler.submit(() -> HeadlessSimulator.save(world, checkpoint)); break;
+                default: break;
+            }
+        });
 
-        //this timer calls the act method of the world once per second.
+        //this timer draws the world every frame, the scheduler ticks it on its own thread.
         AnimationTimer at = new AnimationTimer() {
+            private long shownTick = -1;
+
             @Override
             public void handle(long now) {
-
                 //now is in nanoseconds.
-                if (now - lastRun > 1000000000) {
-                    lastRun = now;
-                    world.act();
+                view.draw(now);
+                if(shownTick != view.getShownTick()){
+                    shownTick = view.getShownTick();
+                    primaryStage.setTitle("Simulation - tick " + shownTick
+                            + (scheduler.isPaused() ? " (paused)" : scheduler.getTickRate() == 0 ? " (fast-forward)" : ""));
                 }
             }
         };
@@ -61,43 +113,34 @@ public class Simulator extends Application {
         primaryStage.setTitle("Simulation");
         primaryStage.setScene(scene);
         primaryStage.show();
+        scheduler.start();
     }
 
     /**
-     * Adds a number of entities of the specified class to the world at random locations.
+     * Stops the simulation thread when the window closes, closes the World and finishes the telemetry file.
      *
-     * @param n the number of entities to add
-     * @param c the class of the entities to add
+     * @throws IOException if the telemetry couldn't be written
      */
-    public void addRandomEntities(int n, Class c){
-        boolean[][] occupied = new boolean[World.ROW][World.COL];       //array of occupied locations
-        int x, y;
-        for (int i = 0; i < n; i++){
-            do {
-                x = getRandomInt(0, World.ROW);    //get random x location
-                y = getRandomInt(0, World.COL);    //get random y location
-            }while(!world.isValidLocation(x, y) || occupied[x][y]);   //make sure location is valid and not occupied
-            occupied[x][y] = true;
-            try {
-                c.getConstructor(World.class, int.class, int.class, int.class).newInstance(world, x, y, 10);   //create new entity
-            } catch (Exception e){
-                e.printStackTrace();
-            }
+    @Override
+    public void stop() throws IOException {
+        if(scheduler != null){
+            scheduler.stop();
+        }
+        if(world != null){
+            world.close();
+        }
+        if(telemetry != null){
+            telemetry.close();
         }
     }
 
     /**
-     * Generates a random number between the given range [a,b).
+     * Adds a number of entities of the specified species to the world at random locations.
      *
-     * @param min the minimum number possible to generate
-     * @param max the maximum number possible to generate, not included
-     * @return a random number within the given range
+     * @param n the number of entities to add
+     * @param species the species of the entities to add
      */
-    public static int getRandomInt(int min, int max){
-        if(min > max){
-            //ensure parameters are in correct order.
-            return getRandomInt(max, min);
-        }
-        return random.nextInt(max - min) + min;
+    public void addRandomEntities(int n, SpeciesDescriptor<?> species){
+        world.addRandomEntities(n, species);
     }
 }
@@ -0,0 +1,203 @@
+package simulation;
+
+/**
+ * Everything the World needs to know about a species: its code in the EntityStore, its class and how
+ * to make a new one.
+ *
+ * New entities are made by a Spawner, usually a constructor reference like {@code Wolf::new}, so
+ * births and seeding call the constructor directly instead of looking it up by reflection.
+ *
+ * The descriptors of all species are kept in a registry, indexed by their code, so looking up the
+ * descriptor of an Entity is an array access.
+ *
+ * @param <T> the class of the entities of this species
+ * @author Layton Zhou
+ */
+public final class SpeciesDescriptor<T extends Entity> {
+
+    /**
+     * Makes a new Entity of a species and adds it to the World.
+     *
+     * @param <T> the class of the entities it makes
+     */
+    @FunctionalInterface
+    public interface Spawner<T extends Entity> {
+        /**
+         * Makes a new Entity.
+         *
+         * @param world the World it lives in
+         * @param x the x-coordinate
+         * @param y the y-coordinate
+         * @param age the age it starts with
+         * @return the new Entity
+         */
+        T spawn(World world, int x, int y, int age);
+    }
+
+    /**
+     * Makes the handle of an Entity that is already in the store, e.g. one loaded from a checkpoint.
+     *
+     * @param <T> the class of the entities it makes
+     */
+    @FunctionalInterface
+    interface Restorer<T extends Entity> {
+        /**
+         * Makes the handle of an Entity.
+         *
+         * @param world the World it lives in
+         * @param slot the slot it lives in
+         * @return the handle
+         */
+        T restore(World world, int slot);
+    }
+
+    public static final SpeciesDescriptor<Wolf> WOLF =
+            new SpeciesDescriptor<>(EntityStore.WOLF, "wolf", Wolf.class, Wolf::new, Wolf::new);
+    public static final SpeciesDescriptor<Sheep> SHEEP =
+            new SpeciesDescriptor<>(EntityStore.SHEEP, "sheep", Sheep.class, Sheep::new, Sheep::new);
+    public static final SpeciesDescriptor<Grass> GRASS =
+            new SpeciesDescriptor<>(EntityStore.GRASS, "grass", Grass.class, Grass::new, Grass::new);
+
+    // the registry, indexed by the code of the species
+    private static final SpeciesDescriptor<?>[] ALL = {WOLF, SHEEP, GRASS};
+
+    private final byte kind;
+    private final String name;
+    private final Class<T> type;
+    private final Spawner<T> spawner;
+    private final Restorer<T> restorer;
+
+    /**
+     * Describes a species.
+     *
+     * @param kind the code of the species in the EntityStore
+     * @param name the name of the species
+     * @param type the class of its entities
+     * @param spawner makes new entities of the species
+     * @param restorer makes the handles of entities that are already in the store
+     */
+    private SpeciesDescriptor(byte kind, String name, Class<T> type, Spawner<T> spawner, Restorer<T> restorer){
+        this.kind = kind;
+        this.name = name;
+        this.type = type;
+        this.spawner = spawner;
+        this.restorer = restorer;
+    }
+
+    /**
+     * Makes a new Entity of this species and adds it to the World.
+     *
+     * @param world the World it lives in
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param age the age it starts with
+     * @return the new Entity
+     */
+    public T spawn(World world, int x, int y, int age){
+        return spawner.spawn(world, x, y, age);
+    }
+
+    /**
+     * Makes the handle of an Entity of this species that is already in the store.
+     *
+     * @param world the World it lives in
+     * @param slot the slot it lives in
+     * @return the handle
+     */
+    T restore(World world, int slot){
+        return restorer.restore(world, slot);
+    }
+
+    /**
+     * Returns the code of the species in the EntityStore.
+     *
+     * @return one of EntityStore.WOLF, SHEEP or GRASS
+     */
+    public byte getKind(){
+        return kind;
+    }
+
+    /**
+     * Returns the name of the species.
+     *
+     * @return the name, e.g. "wolf"
+     */
+    public String getName(){
+        return name;
+    }
+
+    /**
+     * Returns the class of the entities of this species.
+     *
+     * @return the class
+     */
+    public Class<T> getType(){
+        return type;
+    }
+
+    /**
+     * Returns the descriptor of a species code.
+     *
+     * @param kind the code of the species
+     * @return the descriptor, null for EntityStore.NONE
+     */
+    public static SpeciesDescriptor<?> of(byte kind){
+        return kind == EntityStore.NONE ? null : ALL[kind];
+    }
+
+    /**
+     * Returns the descriptor of a class.
+     *
+     * @param c the class of the entities
+     * @return the descriptor, null if the class is not a registered species
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Entity> SpeciesDescriptor<T> of(Class<T> c){
+        for(SpeciesDescriptor<?> species : ALL){
+            if(species.type == c){
+                return (SpeciesDescriptor<T>) species;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the species code of an Entity, subclasses belong to the species of their parent.
+     *
+     * @param entity the Entity
+     * @return the code of its species, EntityStore.NONE if it doesn't belong to any
+     */
+    public static byte kindOf(Entity entity){
+        for(SpeciesDescriptor<?> species : ALL){
+            if(species.type.isInstance(entity)){
+                return species.kind;
+            }
+        }
+        return EntityStore.NONE;
+    }
+
+    /**
+     * Returns the species code of a class.
+     *
+     * @param c the class of the entities
+     * @return the code of the species, EntityStore.NONE if the class is not a registered species
+     */
+    public static byte kindOf(Class<?> c){
+        for(SpeciesDescriptor<?> species : ALL){
+            if(species.type == c){
+                return species.kind;
+            }
+        }
+        return EntityStore.NONE;
+    }
+
+    /**
+     * Returns the name of the species.
+     *
+     * @return the name
+     */
+    @Override
+    public String toString(){
+        return name;
+    }
+}
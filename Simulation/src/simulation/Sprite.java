@@ -1,11 +1,10 @@
 package simulation;
 
-import javafx.scene.Node;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
-
 /**
- * Sprite class.
+ * Sprite class. A Sprite is anything that has a location in the World.
+ *
+ * The Sprite doesn't hold its location itself, it lives in a slot of the World's EntityStore.
+ * How it looks on screen is up to whoever observes the World.
  *
  * @author Mr. Smithe
  */
@@ -13,12 +12,10 @@ import javafx.scene.image.ImageView;
 public class Sprite {
     //instance variables
     private final World world;
+    private final EntityStore store;
 
-    private int x;
-    private int y;
-
-    private Image image; //the image just points to the file
-    private final ImageView imageView; //this is the visual part
+    //the slot of this Sprite in the store, -1 once it has died and its slot was given away
+    int slot;
 
     /**
      * Creates a new Sprite.
@@ -26,26 +23,25 @@ public class Sprite {
      * @param world the World that contains this Sprite
      * @param x the x-coordinate of this Sprite
      * @param y the y-coordinate of this Sprite
-     * @param image the Image of this Sprite
      */
-    public Sprite(World world, int x, int y, Image image) {
+    public Sprite(World world, int x, int y) {
         this.world = world;
-        this.image = image;
-        this.x = x;
-        this.y = y;
-        imageView = new ImageView(image);
-        imageView.setX(x * World.CELL_SIZE);
-        imageView.setY(y * World.CELL_SIZE);
-        world.add_to_root(imageView);
+        this.store = world.getStore();
+        this.slot = store.allocate(this);
+        store.setLocation(slot, x, y);
     }
 
     /**
-     * Returns the visual component of this Sprite.
+     * Creates the handle of a Sprite that is already in the store, e.g. one loaded from a checkpoint.
      *
-     * @return the visual component of this Sprite
+     * @param world the World that contains this Sprite
+     * @param slot the slot the Sprite lives in
      */
-    public Node getNode() {
-        return imageView;
+    Sprite(World world, int slot) {
+        this.world = world;
+        this.store = world.getStore();
+        this.slot = slot;
+        store.attach(slot, this);
     }
 
     /**
@@ -54,7 +50,7 @@ public class Sprite {
      * @return the x-coordinate
      */
     public int getX() {
-        return x;
+        return store.getX(slot);
     }
 
     /**
@@ -63,7 +59,7 @@ public class Sprite {
      * @return the y-coordinate
      */
     public int getY() {
-        return y;
+        return store.getY(slot);
     }
 
     /**
@@ -71,7 +67,7 @@ public class Sprite {
      * @param x the new x-coordinate
      */
     public void setX(int x) {
-        this.x = x;
+        setLocation(x, getY());
     }
 
     /**
@@ -79,25 +75,37 @@ public class Sprite {
      * @param y the new y-coordinate
      */
     public void setY(int y) {
-        this.y = y;
+        setLocation(getX(), y);
+    }
+
+    /**
+     * Sets both coordinates of this Sprite at once and lets the World update its index.
+     * @param x the new x-coordinate
+     * @param y the new y-coordinate
+     */
+    public void setLocation(int x, int y) {
+        int oldX = getX();
+        int oldY = getY();
+        store.setLocation(slot, x, y);
+        world.relocated(this, oldX, oldY);
     }
 
     /**
-     * Sets the Image of this Sprite.
-     * @param image the new Image
+     * Returns the slot of this Sprite in the World's EntityStore.
+     *
+     * @return the slot, -1 once the slot was given to someone else
      */
-    public void setImage(Image image){
-        this.image = image;
-        imageView.setImage(image);
+    public int getSlot() {
+        return slot;
     }
 
     /**
-     * Returns the Imageview of this Sprite.
+     * Returns the store that holds the state of this Sprite.
      *
-     * @return the Imageview of this Sprite
+     * @return the store
      */
-    public ImageView getImageView(){
-        return imageView;
+    protected EntityStore getStore() {
+        return store;
     }
 
     /**
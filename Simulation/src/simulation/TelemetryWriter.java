@@ -0,0 +1,340 @@
+package simulation;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * Streams what happens in a World to a file: births, deaths and why, meals and moves, and after every
+ * tick the population and mean health of every species.
+ *
+ * The thread that runs the World only collects the events of a tick into a batch. At the end of the tick
+ * the batch goes into a bounded queue and a writer thread of its own writes it to the file, several
+ * batches at a time if it has fallen behind. Writing never holds up the tick: if the queue is full the
+ * tick is dropped and the next record says how many ticks are missing (ticks dropped at the very end
+ * are simply missing after the last record, see getDroppedTicks). Batches are reused, the most recently
+ * written first, so collecting doesn't allocate once a few batches are big enough for the busiest tick.
+ *
+ * The file is little-endian, a header and then one length-prefixed record per tick, with the events of
+ * every kind in columns:
+ * <pre>
+ * header: int magic, int version, int number of species, long seed
+ * record: int length of the rest of the record, long tick, long ticks dropped right before this one,
+ *         per species: int population, double mean health
+ *         births: int n, long[n] id, int[n] species, x, y
+ *         deaths: int n, long[n] id, int[n] species, cause (DeathCause ordinal), age
+ *         meals:  int n, long[n] eater id, food id, int[n] eater species
+ *         moves:  int n, long[n] id, int[n] from x, from y, to x, to y
+ * </pre>
+ * A record holds everything that happened since the record before it, so entities added between ticks
+ * show up as births in the next record.
+ *
+ * @author Layton Zhou
+ */
+public class TelemetryWriter implements WorldListener, AutoCloseable {
+
+    // "GRST"
+    private static final int MAGIC = 0x47525354;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    // tells the writer thread to stop
+    private static final Batch END = new Batch();
+
+    private final World world;
+    private final EntityStore store;
+    private final FileChannel channel;
+    private final BinaryOutput out;
+    private final Thread thread;
+
+    // finished batches waiting to be written, and a stack of written batches waiting to be reused
+    private final ArrayBlockingQueue<Batch> full;
+    private final LinkedBlockingDeque<Batch> empty;
+
+    // the batch of the running tick and the ticks dropped since the last one that got through, tick thread only
+    private Batch current = new Batch();
+    private long dropped;
+
+    private volatile long droppedTotal;
+    private volatile IOException failure;
+
+    /**
+     * Starts writing the telemetry of a World to a file, replacing the file if it exists.
+     *
+     * @param world the World, this registers as its listener
+     * @param file the file to write
+     * @param capacity the number of ticks that can wait to be written before ticks are dropped
+     * @throws IOException if the file can't be created
+     */
+    public TelemetryWriter(World world, Path file, int capacity) throws IOException{
+        if(capacity < 1){
+            throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+        }
+        this.world = world;
+        this.store = world.getStore();
+        this.full = new ArrayBlockingQueue<>(capacity);
+        this.empty = new LinkedBlockingDeque<>(capacity + 1);
+        for(int i = 0; i < capacity + 1; i++){
+            empty.add(new Batch());
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        out = new BinaryOutput(channel, BUFFER_SIZE);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(EntityStore.SPECIES_COUNT);
+        out.writeLong(world.getSeed());
+        thread = new Thread(this::run, "telemetry");
+        thread.setDaemon(true);
+        thread.start();
+        world.addListener(this);
+    }
+
+    /**
+     * Returns the number of ticks that were dropped because the writer couldn't keep up.
+     *
+     * @return the number of dropped ticks
+     */
+    public long getDroppedTicks(){
+        return droppedTotal;
+    }
+
+    /**
+     * Stops listening, waits until every finished tick is written and closes the file. Events after the
+     * last finished tick are not written. Must not be called while the World is ticking.
+     *
+     * @throws IOException if writing failed at any point
+     */
+    @Override
+    public void close() throws IOException{
+        world.removeListener(this);
+        try {
+            full.put(END);
+            thread.join();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if(failure != null){
+            throw failure;
+        }
+    }
+
+    @Override
+    public void entityAdded(Entity entity) {
+        int slot = entity.getSlot();
+        Table births = current.births;
+        int i = births.add();
+        births.longs[0][i] = store.getId(slot);
+        births.ints[0][i] = store.getSpecies(slot);
+        births.ints[1][i] = store.getX(slot);
+        births.ints[2][i] = store.getY(slot);
+    }
+
+    @Override
+    public void entityRemoved(Entity entity, DeathCause cause) {
+        int slot = entity.getSlot();
+        Table deaths = current.deaths;
+        int i = deaths.add();
+        deaths.longs[0][i] = store.getId(slot);
+        deaths.ints[0][i] = store.getSpecies(slot);
+        deaths.ints[1][i] = cause.ordinal();
+        deaths.ints[2][i] = store.getAge(slot);
+    }
+
+    @Override
+    public void entityAte(Entity eater, Entity food) {
+        Table meals = current.meals;
+        int i = meals.add();
+        meals.longs[0][i] = store.getId(eater.getSlot());
+        meals.longs[1][i] = store.getId(food.getSlot());
+        meals.ints[0][i] = store.getSpecies(eater.getSlot());
+    }
+
+    @Override
+    public void entityMoved(Entity entity, int fromX, int fromY) {
+        int slot = entity.getSlot();
+        Table moves = current.moves;
+        int i = moves.add();
+        moves.longs[0][i] = store.getId(slot);
+        moves.ints[0][i] = fromX;
+        moves.ints[1][i] = fromY;
+        moves.ints[2][i] = store.getX(slot);
+        moves.ints[3][i] = store.getY(slot);
+    }
+
+    @Override
+    public void entityChanged(Entity entity) {
+    }
+
+    /**
+     * Adds the population and health of every species to the batch of the tick and hands it to the
+     * writer, or drops it if the writer is too far behind.
+     */
+    @Override
+    public void tickFinished() {
+        Batch batch = current;
+        if(failure == null){
+            batch.tick = world.getTick();
+            batch.dropped = dropped;
+            for(byte kind = 0; kind < EntityStore.SPECIES_COUNT; kind++){
+                long health = 0;
+                int count = 0;
+                for(int i = 0; i < store.getMemberCount(kind); i++){
+                    int slot = store.getMember(kind, i);
+                    if(store.isLiving(slot)){
+                        health += store.getHealth(slot);
+                        count++;
+                    }
+                }
+                batch.population[kind] = count;
+                batch.meanHealth[kind] = count == 0 ? 0 : (double) health / count;
+            }
+            if(full.offer(batch)){
+                dropped = 0;
+                current = empty.pollFirst();
+                if(current == null){
+                    current = new Batch();
+                }
+            }else{
+                dropped++;
+                droppedTotal++;
+            }
+        }
+        current.clear();
+    }
+
+    /**
+     * The writer thread: writes whatever batches are waiting, then flushes. After a failed write it only
+     * hands the batches back until it is told to stop.
+     */
+    private void run(){
+        ArrayList<Batch> batches = new ArrayList<>();
+        boolean end = false;
+        while(!end){
+            try {
+                batches.add(full.take());
+            } catch (InterruptedException e){
+                return;
+            }
+            full.drainTo(batches);
+            try {
+                for(Batch batch : batches){
+                    if(batch == END){
+                        end = true;
+                    }else if(failure == null){
+                        write(batch);
+                    }
+                }
+                if(failure == null){
+                    out.flush();
+                }
+            } catch (IOException e){
+                failure = e;
+            }
+            for(Batch batch : batches){
+                if(batch != END){
+                    empty.offerFirst(batch);
+                }
+            }
+            batches.clear();
+        }
+    }
+
+    /**
+     * Writes the record of one tick.
+     */
+    private void write(Batch batch) throws IOException{
+        int length = 8 + 8 + EntityStore.SPECIES_COUNT * (4 + 8)
+                + batch.births.bytes() + batch.deaths.bytes() + batch.meals.bytes() + batch.moves.bytes();
+        out.writeInt(length);
+        out.writeLong(batch.tick);
+        out.writeLong(batch.dropped);
+        for(int kind = 0; kind < EntityStore.SPECIES_COUNT; kind++){
+            out.writeInt(batch.population[kind]);
+            out.writeDouble(batch.meanHealth[kind]);
+        }
+        batch.births.write(out);
+        batch.deaths.write(out);
+        batch.meals.write(out);
+        batch.moves.write(out);
+    }
+
+    /**
+     * Everything that happened in one tick.
+     */
+    private static final class Batch {
+        long tick;
+        long dropped;
+        final int[] population = new int[EntityStore.SPECIES_COUNT];
+        final double[] meanHealth = new double[EntityStore.SPECIES_COUNT];
+        final Table births = new Table(1, 3);
+        final Table deaths = new Table(1, 3);
+        final Table meals = new Table(2, 1);
+        final Table moves = new Table(1, 4);
+
+        /**
+         * Forgets the events, keeps the room for them.
+         */
+        void clear(){
+            births.count = 0;
+            deaths.count = 0;
+            meals.count = 0;
+            moves.count = 0;
+        }
+    }
+
+    /**
+     * Events of one kind, one array per field.
+     */
+    private static final class Table {
+        int count;
+        final long[][] longs;
+        final int[][] ints;
+
+        Table(int longFields, int intFields){
+            longs = new long[longFields][64];
+            ints = new int[intFields][64];
+        }
+
+        /**
+         * Makes room for one more event.
+         *
+         * @return the index of the new event
+         */
+        int add(){
+            if(count == ints[0].length){
+                int capacity = count * 2;
+                for(int f = 0; f < longs.length; f++){
+                    longs[f] = Arrays.copyOf(longs[f], capacity);
+                }
+                for(int f = 0; f < ints.length; f++){
+                    ints[f] = Arrays.copyOf(ints[f], capacity);
+                }
+            }
+            return count++;
+        }
+
+        /**
+         * Returns the number of bytes write writes.
+         */
+        int bytes(){
+            return 4 + count * (8 * longs.length + 4 * ints.length);
+        }
+
+        void write(BinaryOutput out) throws IOException{
+            out.writeInt(count);
+            for(long[] field : longs){
+                out.writeLongs(field, count);
+            }
+            for(int[] field : ints){
+                out.writeInts(field, count);
+            }
+        }
+    }
+}
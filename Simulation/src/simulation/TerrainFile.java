@@ -0,0 +1,130 @@
+package simulation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A fence layout on disk that a World maps instead of placing its fences, see WorldConfig.setTerrain.
+ *
+ * Usage: TerrainFile out=file [rows=16] [cols=16] [fences=50] [seed=...]
+ *
+ * writes the fences a World with these settings would place. The file holds the NavigationGrid the way it
+ * is in memory, little-endian:
+ * <pre>
+ * int magic, int version, int rows, int cols
+ * long[(rows * cols + 63) / 64] passable bits, one per cell
+ * byte[rows * cols] passable neighbours of every cell
+ * </pre>
+ * so a World maps it instead of reading it: it starts at once however big the map is, and the operating
+ * system only reads the parts the animals walk on and drops them again when memory is short. The mapping
+ * is private, fences that are put up or taken down later change the World but never the file. Because of
+ * that the file has to be writable, even though it isn't written.
+ *
+ * @author Layton Zhou
+ */
+public final class TerrainFile {
+
+    // "GRTN", not the "GRST" of telemetry files or the "GRSW" of checkpoints
+    private static final int MAGIC = 0x4752544E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private TerrainFile(){
+    }
+
+    /**
+     * Writes the fences of a new World with the given settings.
+     *
+     * @param args command line arguments, "key=value" pairs, see the class comment
+     * @throws IOException if the file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        String out = HeadlessSimulator.stringArg(args, "out", null);
+        if(out == null){
+            throw new IllegalArgumentException("usage: TerrainFile out=file [rows=16] [cols=16] [fences=50] [seed=...]");
+        }
+        long start = System.nanoTime();
+        try(World world = new World(WorldConfig.parse(args))){
+            save(world, Paths.get(out));
+            System.out.println("wrote the " + world.getRows() + "x" + world.getCols() + " terrain of seed "
+                    + world.getSeed() + " to " + out + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+    }
+
+    /**
+     * Saves the fences of a World, replacing the file if it exists.
+     *
+     * @param world the World
+     * @param file the file to write
+     * @throws IOException if writing fails, the old file is then left alone
+     */
+    public static void save(World world, Path file) throws IOException{
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            BinaryOutput out = new BinaryOutput(channel, BUFFER_SIZE);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(world.getRows());
+            out.writeInt(world.getCols());
+            world.getNavigation().writeTo(out);
+            out.flush();
+            channel.force(false);
+        }catch(IOException | RuntimeException e){
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Maps the fences of a terrain file.
+     *
+     * @param file the file
+     * @param rows the number of possible x-coordinates the file must have
+     * @param cols the number of possible y-coordinates the file must have
+     * @return the grid, backed by the file
+     * @throws IOException if the file can't be mapped or is not a terrain of that size
+     */
+    static NavigationGrid map(Path file, int rows, int cols) throws IOException{
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while(header.hasRemaining() && channel.read(header) >= 0){
+                // a file read can stop short
+            }
+            header.flip();
+            if(header.remaining() < HEADER_SIZE || header.getInt() != MAGIC){
+                throw new IOException("not a terrain file: " + file);
+            }
+            int version = header.getInt();
+            if(version != VERSION){
+                throw new IOException("unknown terrain version " + version + ": " + file);
+            }
+            int fileRows = header.getInt();
+            int fileCols = header.getInt();
+            if(fileRows != rows || fileCols != cols){
+                throw new IOException("terrain is " + fileRows + "x" + fileCols + ", the World " + rows + "x" + cols
+                        + ": " + file);
+            }
+            long bits = BitGrid.words(rows, cols) * 8L;
+            long cells = (long) rows * cols;
+            if(channel.size() != HEADER_SIZE + bits + cells){
+                throw new IOException("terrain is " + channel.size() + " bytes, expected "
+                        + (HEADER_SIZE + bits + cells) + ": " + file);
+            }
+            LongBuffer passable = channel.map(FileChannel.MapMode.PRIVATE, HEADER_SIZE, bits)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            ByteBuffer masks = channel.map(FileChannel.MapMode.PRIVATE, HEADER_SIZE + bits, cells);
+            return new NavigationGrid(rows, cols, passable, masks);
+        }
+    }
+}
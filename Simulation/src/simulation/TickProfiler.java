@@ -0,0 +1,356 @@
+package simulation;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Shows where the time of a tick goes. The World times the phases of act, animals time their own turns,
+ * and the search for food counts how much it looks at. The profiler keeps a histogram per phase
+ * (see LatencyHistogram) and a counter per kind of lookup.
+ *
+ * A World without a profiler only checks for null, so profiling costs next to nothing when it is off.
+ *
+ * The numbers are collected in periods, e.g. 10 seconds. At the end of a period they are published: they
+ * can then be read over JMX (see register and TickProfilerMXBean) and a summary is printed to the log,
+ * if there is one. Phases are timed by the thread that runs the World, only the counters are also
+ * counted by the threads of the parallel tick. The turns of single animals are only timed in the classic
+ * tick, the parallel tick doesn't run them one by one.
+ *
+ * @author Layton Zhou
+ */
+public class TickProfiler implements TickProfilerMXBean {
+
+    /**
+     * Something that is timed.
+     */
+    public enum Phase {
+        /** a whole call to World.act */
+        TICK,
+        /** marking the animals that stay to eat */
+        MARK_EATING,
+        /** the turns of all wolves */
+        WOLVES,
+        /** the turns of all sheep */
+        SHEEP,
+        /** spreading the grass */
+        GRASS,
+        /** freeing the dead and waking the newborns */
+        END_TICK,
+        /** copying the World for the view, between ticks */
+        SNAPSHOT,
+        /** one Animal.seekFood, classic tick only */
+        SEEK_FOOD,
+        /** one Animal.wander, classic tick only */
+        WANDER
+    }
+
+    /**
+     * Something that is counted.
+     */
+    public enum Counter {
+        /** an animal checked if it stands on food */
+        FOOD_CHECKS,
+        /** a search for the nearest food */
+        NEAREST_SEARCHES,
+        /** cells in the rings the searches went through */
+        NEAREST_CELLS,
+        /** searches that gave up on rings and went through every candidate */
+        NEAREST_SCANS,
+        /** grass cells that could spread */
+        GRASS_FRONTIER,
+        /** grass cells that woke up to spread, see TimingWheel */
+        GRASS_WAKEUPS,
+        /** cells the food fields looked at while they were brought up to date */
+        FOOD_FIELD_CELLS
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private final long periodNanos;
+    private final PrintStream log;
+
+    // the running period, thread that runs the World only
+    private final LatencyHistogram[] histograms = new LatencyHistogram[PHASES.length];
+    private long periodStart = System.nanoTime();
+    private long periodTicks;
+    // the counters of the running period, any thread
+    private final LongAdder[] counters = new LongAdder[COUNTERS.length];
+
+    // the last finished period
+    private volatile Period published = new Period(new LatencyHistogram[0], new long[0], 0, 0);
+
+    /**
+     * Creates a profiler.
+     *
+     * @param periodSeconds the length of a period in seconds
+     * @param log where to print the summary of every period, null to only publish it
+     */
+    public TickProfiler(double periodSeconds, PrintStream log){
+        if(!(periodSeconds > 0)){
+            throw new IllegalArgumentException("periodSeconds must be more than 0: " + periodSeconds);
+        }
+        this.periodNanos = (long) (periodSeconds * 1e9);
+        this.log = log;
+        for(int i = 0; i < histograms.length; i++){
+            histograms[i] = new LatencyHistogram();
+        }
+        for(int i = 0; i < counters.length; i++){
+            counters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the time of a phase. Only the thread that runs the World may call this.
+     *
+     * @param phase the phase
+     * @param start when the phase started, from System.nanoTime
+     * @return now, so the next phase can start from here
+     */
+    public long record(Phase phase, long start){
+        long now = System.nanoTime();
+        histograms[phase.ordinal()].record(now - start);
+        return now;
+    }
+
+    /**
+     * Counts one event.
+     *
+     * @param counter what happened
+     */
+    public void count(Counter counter){
+        counters[counter.ordinal()].increment();
+    }
+
+    /**
+     * Counts a number of events.
+     *
+     * @param counter what happened
+     * @param n how often
+     */
+    public void count(Counter counter, long n){
+        counters[counter.ordinal()].add(n);
+    }
+
+    /**
+     * Records the end of a tick and publishes the period if it is over. Only the thread that runs the
+     * World may call this.
+     *
+     * @param start when the tick started, from System.nanoTime
+     */
+    public void tickFinished(long start){
+        long now = record(Phase.TICK, start);
+        periodTicks++;
+        if(now - periodStart >= periodNanos){
+            publish(now);
+        }
+    }
+
+    /**
+     * Ends the running period now, publishes it and logs it.
+     */
+    public void publish(){
+        publish(System.nanoTime());
+    }
+
+    /**
+     * Registers this profiler with the platform MBean server as simulation:type=TickProfiler.
+     *
+     * @throws IllegalStateException if it can't be registered, e.g. because another one already is
+     */
+    public void register(){
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName());
+        } catch (JMException e){
+            throw new IllegalStateException("could not register the profiler", e);
+        }
+    }
+
+    /**
+     * Unregisters this profiler from the platform MBean server.
+     */
+    public void unregister(){
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName());
+        } catch (JMException e){
+            throw new IllegalStateException("could not unregister the profiler", e);
+        }
+    }
+
+    @Override
+    public long getTicks(){
+        return published.ticks;
+    }
+
+    @Override
+    public double getTicksPerSecond(){
+        Period period = published;
+        return period.nanos == 0 ? 0 : period.ticks / (period.nanos / 1e9);
+    }
+
+    @Override
+    public Map<String, Double> getMeanNanos(){
+        Map<String, Double> answer = new LinkedHashMap<>();
+        Period period = published;
+        for(Phase phase : period.phases()){
+            answer.put(phase.name(), period.histograms[phase.ordinal()].getMean());
+        }
+        return answer;
+    }
+
+    @Override
+    public Map<String, Long> getP50Nanos(){
+        return percentiles(50);
+    }
+
+    @Override
+    public Map<String, Long> getP99Nanos(){
+        return percentiles(99);
+    }
+
+    @Override
+    public Map<String, Long> getMaxNanos(){
+        Map<String, Long> answer = new LinkedHashMap<>();
+        Period period = published;
+        for(Phase phase : period.phases()){
+            answer.put(phase.name(), period.histograms[phase.ordinal()].getMax());
+        }
+        return answer;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCounts(){
+        Map<String, Long> answer = new LinkedHashMap<>();
+        Period period = published;
+        for(Phase phase : period.phases()){
+            answer.put(phase.name(), period.histograms[phase.ordinal()].getCount());
+        }
+        return answer;
+    }
+
+    @Override
+    public Map<String, Double> getCountsPerTick(){
+        Period period = published;
+        Map<String, Double> answer = new LinkedHashMap<>();
+        for(int i = 0; i < period.counters.length; i++){
+            answer.put(COUNTERS[i].name(), period.perTick(i));
+        }
+        return answer;
+    }
+
+    @Override
+    public String getSummary(){
+        Period period = published;
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT, "profile: %d ticks in %.1f s",
+                period.ticks, period.nanos / 1e9));
+        for(Phase phase : period.phases()){
+            LatencyHistogram h = period.histograms[phase.ordinal()];
+            summary.append(String.format(Locale.ROOT, "%n  %-12s %10d x  mean %s  p50 %s  p99 %s  max %s",
+                    phase.name().toLowerCase(Locale.ROOT), h.getCount(), time(h.getMean()),
+                    time(h.getPercentile(50)), time(h.getPercentile(99)), time(h.getMax())));
+        }
+        for(int i = 0; i < period.counters.length; i++){
+            summary.append(String.format(Locale.ROOT, "%n  %-18s %.1f per tick",
+                    COUNTERS[i].name().toLowerCase(Locale.ROOT), period.perTick(i)));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Publishes the running period and starts a new one.
+     */
+    private void publish(long now){
+        LatencyHistogram[] copies = new LatencyHistogram[histograms.length];
+        for(int i = 0; i < histograms.length; i++){
+            copies[i] = histograms[i].copy();
+            histograms[i].reset();
+        }
+        long[] counts = new long[counters.length];
+        for(int i = 0; i < counters.length; i++){
+            counts[i] = counters[i].sumThenReset();
+        }
+        published = new Period(copies, counts, periodTicks, now - periodStart);
+        periodStart = now;
+        periodTicks = 0;
+        if(log != null){
+            log.println(getSummary());
+        }
+    }
+
+    /**
+     * Returns a percentile of every phase.
+     */
+    private Map<String, Long> percentiles(double percentile){
+        Map<String, Long> answer = new LinkedHashMap<>();
+        Period period = published;
+        for(Phase phase : period.phases()){
+            answer.put(phase.name(), period.histograms[phase.ordinal()].getPercentile(percentile));
+        }
+        return answer;
+    }
+
+    /**
+     * Formats a time in nanoseconds with a unit that fits.
+     */
+    private static String time(double nanos){
+        if(nanos < 1e3){
+            return String.format(Locale.ROOT, "%.0f ns", nanos);
+        }else if(nanos < 1e6){
+            return String.format(Locale.ROOT, "%.1f us", nanos / 1e3);
+        }
+        return String.format(Locale.ROOT, "%.2f ms", nanos / 1e6);
+    }
+
+    /**
+     * Returns the name the profiler is registered under.
+     */
+    private static ObjectName objectName() throws JMException{
+        return new ObjectName("simulation:type=TickProfiler");
+    }
+
+    /**
+     * The numbers of a finished period, never changed after it is published.
+     */
+    private static final class Period {
+        final LatencyHistogram[] histograms;
+        final long[] counters;
+        final long ticks;
+        final long nanos;
+
+        Period(LatencyHistogram[] histograms, long[] counters, long ticks, long nanos){
+            this.histograms = histograms;
+            this.counters = counters;
+            this.ticks = ticks;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Returns the phases that ran at least once.
+         */
+        Phase[] phases(){
+            int n = 0;
+            Phase[] answer = new Phase[histograms.length];
+            for(int i = 0; i < histograms.length; i++){
+                if(histograms[i].getCount() > 0){
+                    answer[n++] = PHASES[i];
+                }
+            }
+            return Arrays.copyOf(answer, n);
+        }
+
+        /**
+         * Returns a counter divided by the number of ticks.
+         */
+        double perTick(int counter){
+            return ticks == 0 ? 0 : (double) counters[counter] / ticks;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package simulation;
+
+import java.util.Map;
+
+/**
+ * What a TickProfiler shows over JMX, e.g. in JConsole under simulation:type=TickProfiler. Every value is
+ * about the last finished period, the maps have one entry per TickProfiler.Phase or TickProfiler.Counter.
+ *
+ * @author Layton Zhou
+ */
+public interface TickProfilerMXBean {
+
+    /**
+     * Returns the number of ticks in the last period.
+     *
+     * @return the number of ticks
+     */
+    long getTicks();
+
+    /**
+     * Returns the number of ticks per second in the last period.
+     *
+     * @return the tick rate
+     */
+    double getTicksPerSecond();
+
+    /**
+     * Returns the mean time of every phase.
+     *
+     * @return the mean in nanoseconds, by phase
+     */
+    Map<String, Double> getMeanNanos();
+
+    /**
+     * Returns the median time of every phase.
+     *
+     * @return the median in nanoseconds, by phase
+     */
+    Map<String, Long> getP50Nanos();
+
+    /**
+     * Returns the 99th percentile of the time of every phase.
+     *
+     * @return the 99th percentile in nanoseconds, by phase
+     */
+    Map<String, Long> getP99Nanos();
+
+    /**
+     * Returns the longest time of every phase.
+     *
+     * @return the maximum in nanoseconds, by phase
+     */
+    Map<String, Long> getMaxNanos();
+
+    /**
+     * Returns how often every phase ran.
+     *
+     * @return the number of times, by phase
+     */
+    Map<String, Long> getPhaseCounts();
+
+    /**
+     * Returns every counter divided by the number of ticks.
+     *
+     * @return the counts per tick, by counter
+     */
+    Map<String, Double> getCountsPerTick();
+
+    /**
+     * Returns the summary that is also logged.
+     *
+     * @return the summary, one line per phase
+     */
+    String getSummary();
+}
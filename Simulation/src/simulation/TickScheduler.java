@@ -0,0 +1,340 @@
+package simulation;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Runs a World on a thread of its own, so the speed of the simulation doesn't depend on the frame rate.
+ *
+ * The World ticks at a fixed rate, e.g. one tick per second. If the thread falls behind (a slow tick, a
+ * busy machine) it catches up by running the missed ticks back to back, but never more than maxCatchUp of
+ * them; beyond that the missed ticks are dropped, so the World doesn't race ahead once the machine is free
+ * again. A tick rate of 0 is fast-forward: the World ticks as fast as it can.
+ *
+ * The World can be paused and then stepped one tick at a time. Other work that needs the World to hold
+ * still, like saving it (see WorldCheckpoint), is submitted to the scheduler and runs between two ticks.
+ *
+ * Only the scheduler thread touches the World once it is started. A view asks for the latest snapshot
+ * (see WorldSnapshot) instead. Between ticks, and while it waits, the scheduler fills a snapshot if the view
+ * has asked for a new one since the last and the World has changed, so fast-forward doesn't spend its time
+ * copying states nobody draws. Snapshots are triple buffered: the scheduler fills one, one waits to be
+ * picked up and the view draws the third.
+ *
+ * @author Layton Zhou
+ */
+public class TickScheduler implements WorldListener {
+
+    private final World world;
+    private final Thread thread;
+
+    // settings, guarded by this
+    private double tickRate;
+    private int maxCatchUp = 10;
+    private boolean paused;
+    private int steps;
+    private boolean running = true;
+    // work to run between ticks
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+    // the snapshots, guarded by this, except back which only the scheduler thread uses
+    private final WorldSnapshot[] snapshots = {new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot()};
+    private int back = 0;
+    private int ready = 1;
+    private int front = 2;
+    private boolean fresh;
+    private volatile boolean wanted = true;
+    // the tick of the last snapshot that was filled, scheduler thread only
+    private long capturedTick;
+
+    // where every slot was before its last move, and in which tick it moved, scheduler thread only
+    private int[] fromX = new int[0];
+    private int[] fromY = new int[0];
+    private long[] movedTick = new long[0];
+
+    /**
+     * Creates a scheduler for a World, it starts paused until start is called.
+     *
+     * @param world the World to run, nothing else may change it after start
+     * @param tickRate the number of ticks per second, 0 for fast-forward
+     */
+    public TickScheduler(World world, double tickRate){
+        this.world = world;
+        setTickRate(tickRate);
+        world.addListener(this);
+        snapshots[ready].capture(world, this);
+        capturedTick = world.getTick();
+        fresh = true;
+        thread = new Thread(this::run, "simulation");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the scheduler thread.
+     */
+    public void start(){
+        thread.start();
+    }
+
+    /**
+     * Stops the scheduler thread after the tick it is running and waits for it.
+     */
+    public void stop(){
+        synchronized(this){
+            running = false;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of ticks per second.
+     *
+     * @return the tick rate, 0 for fast-forward
+     */
+    public synchronized double getTickRate(){
+        return tickRate;
+    }
+
+    /**
+     * Sets the number of ticks per second.
+     *
+     * @param tickRate the tick rate, 0 for fast-forward
+     */
+    public synchronized void setTickRate(double tickRate){
+        if(tickRate < 0 || Double.isNaN(tickRate)){
+            throw new IllegalArgumentException("tickRate must not be negative: " + tickRate);
+        }
+        this.tickRate = tickRate;
+        notifyAll();
+    }
+
+    /**
+     * Sets how many missed ticks are run back to back when the scheduler falls behind.
+     *
+     * @param maxCatchUp the number of ticks, 0 to drop every missed tick
+     */
+    public synchronized void setMaxCatchUp(int maxCatchUp){
+        if(maxCatchUp < 0){
+            throw new IllegalArgumentException("maxCatchUp must not be negative: " + maxCatchUp);
+        }
+        this.maxCatchUp = maxCatchUp;
+    }
+
+    /**
+     * Checks if the World is paused.
+     *
+     * @return true if it is paused
+     */
+    public synchronized boolean isPaused(){
+        return paused;
+    }
+
+    /**
+     * Pauses or resumes the World.
+     *
+     * @param paused true to pause
+     */
+    public synchronized void setPaused(boolean paused){
+        this.paused = paused;
+        notifyAll();
+    }
+
+    /**
+     * Runs one tick while the World is paused.
+     */
+    public synchronized void step(){
+        steps++;
+        notifyAll();
+    }
+
+    /**
+     * Runs something on the scheduler thread between two ticks, even while the World is paused. The task
+     * has to deal with its own errors, if it throws the scheduler stops.
+     *
+     * @param task the task, it may use the World
+     */
+    public synchronized void submit(Runnable task){
+        tasks.add(task);
+        notifyAll();
+    }
+
+    /**
+     * Returns the latest finished snapshot and asks for a newer one. The snapshot stays valid until the next
+     * call, only the thread that draws may call this.
+     *
+     * @return the latest snapshot
+     */
+    public synchronized WorldSnapshot acquireSnapshot(){
+        if(fresh){
+            int t = front;
+            front = ready;
+            ready = t;
+            fresh = false;
+        }
+        wanted = true;
+        notifyAll();
+        return snapshots[front];
+    }
+
+    /**
+     * The scheduler thread.
+     */
+    private void run(){
+        long next = System.nanoTime();
+        while(true){
+            for(Runnable task = nextTask(); task != null; task = nextTask()){
+                task.run();
+            }
+            if(wanted && capturedTick != world.getTick()){
+                wanted = false;
+                capturedTick = world.getTick();
+                TickProfiler profiler = world.getProfiler();
+                long start = profiler == null ? 0 : System.nanoTime();
+                snapshots[back].capture(world, this);
+                if(profiler != null){
+                    profiler.record(TickProfiler.Phase.SNAPSHOT, start);
+                }
+                publish();
+            }
+            synchronized(this){
+                if(!running){
+                    return;
+                }
+                if(steps > 0){
+                    steps--;
+                }else if(paused){
+                    if((!wanted || capturedTick == world.getTick()) && tasks.isEmpty()){
+                        waitQuietly(0);
+                    }
+                    next = System.nanoTime();
+                    continue;
+                }else if(tickRate > 0){
+                    long period = (long) (1e9 / tickRate);
+                    long now = System.nanoTime();
+                    if(now < next){
+                        waitQuietly(Math.max(1, (next - now) / 1000000));
+                        continue;
+                    }
+                    next += period;
+                    // too far behind, forget about the ticks that can't be caught up
+                    if(now - next > maxCatchUp * period){
+                        next = now + period;
+                    }
+                }else{
+                    next = System.nanoTime();
+                }
+            }
+            world.act();
+        }
+    }
+
+    /**
+     * Takes the next submitted task.
+     *
+     * @return the task, null if there is none
+     */
+    private synchronized Runnable nextTask(){
+        return tasks.poll();
+    }
+
+    /**
+     * Waits until a setting changes or the time is up.
+     *
+     * @param millis the longest time to wait, 0 to wait until a setting changes
+     */
+    private void waitQuietly(long millis){
+        try {
+            wait(millis);
+        } catch (InterruptedException e){
+            running = false;
+        }
+    }
+
+    /**
+     * Publishes the filled snapshot, so the view can pick it up.
+     */
+    private synchronized void publish(){
+        int t = ready;
+        ready = back;
+        back = t;
+        fresh = true;
+    }
+
+    @Override
+    public void entityAdded(Entity entity) {
+        ensureCapacity(entity.getSlot());
+        //a reused slot must not slide from where its last owner was
+        movedTick[entity.getSlot()] = Long.MIN_VALUE;
+    }
+
+    @Override
+    public void entityRemoved(Entity entity, DeathCause cause) {
+    }
+
+    @Override
+    public void entityAte(Entity eater, Entity food) {
+    }
+
+    @Override
+    public void entityMoved(Entity entity, int fromX, int fromY) {
+        int slot = entity.getSlot();
+        ensureCapacity(slot);
+        //if it moves twice in a tick, it came from where it started
+        if(movedTick[slot] != world.getTick()){
+            movedTick[slot] = world.getTick();
+            this.fromX[slot] = fromX;
+            this.fromY[slot] = fromY;
+        }
+    }
+
+    @Override
+    public void entityChanged(Entity entity) {
+    }
+
+    @Override
+    public void tickFinished() {
+    }
+
+    /**
+     * Checks if a slot moved in the given tick.
+     *
+     * @param slot the slot
+     * @param tick the tick
+     * @return true if it moved in that tick
+     */
+    boolean movedIn(int slot, long tick){
+        return slot < movedTick.length && movedTick[slot] == tick;
+    }
+
+    /**
+     * Returns the x-coordinate a slot had before its last move.
+     */
+    int getFromX(int slot){
+        return fromX[slot];
+    }
+
+    /**
+     * Returns the y-coordinate a slot had before its last move.
+     */
+    int getFromY(int slot){
+        return fromY[slot];
+    }
+
+    /**
+     * Makes sure the move arrays have room for a slot.
+     */
+    private void ensureCapacity(int slot){
+        if(slot >= movedTick.length){
+            int capacity = Math.max(slot + 1, world.getStore().capacity());
+            fromX = Arrays.copyOf(fromX, capacity);
+            fromY = Arrays.copyOf(fromY, capacity);
+            int old = movedTick.length;
+            movedTick = Arrays.copyOf(movedTick, capacity);
+            Arrays.fill(movedTick, old, capacity, Long.MIN_VALUE);
+        }
+    }
+}
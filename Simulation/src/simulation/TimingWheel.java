@@ -0,0 +1,163 @@
+package simulation;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Wakes things up at the tick they asked for, e.g. grass that wants to spread again in 7 ticks.
+ *
+ * A timing wheel: a ring of slots, one per tick, and a wake-up goes into the slot of its tick. Scheduling
+ * is an append and a tick only looks at its own slot, so the cost follows the number of wake-ups, not the
+ * number of things that are waiting. A wake-up further away than the ring is long waits in its slot for
+ * the right round.
+ *
+ * The keys are ints, e.g. cells or slots. The wheel doesn't remember who is scheduled; the owner keeps
+ * track of that, and of wake-ups that are no longer wanted.
+ *
+ * @author Layton Zhou
+ */
+final class TimingWheel {
+
+    private final int mask;
+    // the keys and ticks of the wake-ups in every slot
+    private final int[][] keys;
+    private final long[][] ticks;
+    private final int[] sizes;
+    private int size;
+
+    // the keys of the last drain, sorted
+    private int[] ready = new int[64];
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param slots the number of slots, a power of two
+     */
+    TimingWheel(int slots){
+        if(slots <= 0 || (slots & (slots - 1)) != 0){
+            throw new IllegalArgumentException("slots must be a power of two: " + slots);
+        }
+        mask = slots - 1;
+        keys = new int[slots][8];
+        ticks = new long[slots][8];
+        sizes = new int[slots];
+    }
+
+    /**
+     * Asks for a key to be woken up at a tick.
+     *
+     * @param key the key
+     * @param tick the tick
+     */
+    void schedule(int key, long tick){
+        int slot = (int) tick & mask;
+        int n = sizes[slot];
+        if(n == keys[slot].length){
+            keys[slot] = Arrays.copyOf(keys[slot], n * 2);
+            ticks[slot] = Arrays.copyOf(ticks[slot], n * 2);
+        }
+        keys[slot][n] = key;
+        ticks[slot][n] = tick;
+        sizes[slot] = n + 1;
+        size++;
+    }
+
+    /**
+     * Takes every wake-up of a tick off the wheel. Wake-ups of earlier ticks that were never drained are
+     * lost.
+     *
+     * @param tick the tick
+     * @return the number of keys, read them with getReady
+     */
+    int drain(long tick){
+        int slot = (int) tick & mask;
+        int[] slotKeys = keys[slot];
+        long[] slotTicks = ticks[slot];
+        int n = sizes[slot];
+        int kept = 0;
+        int count = 0;
+        for(int i = 0; i < n; i++){
+            if(slotTicks[i] > tick){
+                // a later round
+                slotKeys[kept] = slotKeys[i];
+                slotTicks[kept++] = slotTicks[i];
+            }else{
+                if(count == ready.length){
+                    ready = Arrays.copyOf(ready, count * 2);
+                }
+                ready[count++] = slotKeys[i];
+            }
+        }
+        sizes[slot] = kept;
+        size -= n - kept;
+        Arrays.sort(ready, 0, count);
+        return count;
+    }
+
+    /**
+     * Returns a key of the last drain, in increasing order.
+     *
+     * @param i the index, less than what drain returned
+     * @return the key
+     */
+    int getReady(int i){
+        return ready[i];
+    }
+
+    /**
+     * Returns the number of wake-ups on the wheel.
+     *
+     * @return the number of wake-ups
+     */
+    int size(){
+        return size;
+    }
+
+    /**
+     * Forgets every wake-up.
+     */
+    void clear(){
+        Arrays.fill(sizes, 0);
+        size = 0;
+    }
+
+    /**
+     * Writes every wake-up: int count, int[count] keys, long[count] ticks.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    void writeTo(BinaryOutput out) throws IOException{
+        int[] allKeys = new int[size];
+        long[] allTicks = new long[size];
+        int n = 0;
+        for(int slot = 0; slot < sizes.length; slot++){
+            System.arraycopy(keys[slot], 0, allKeys, n, sizes[slot]);
+            System.arraycopy(ticks[slot], 0, allTicks, n, sizes[slot]);
+            n += sizes[slot];
+        }
+        out.writeInt(n);
+        out.writeInts(allKeys, n);
+        out.writeLongs(allTicks, n);
+    }
+
+    /**
+     * Reads what writeTo wrote, in place of what is on the wheel.
+     *
+     * @param in where to read from
+     * @return the keys that were read
+     * @throws IOException if the checkpoint is broken
+     */
+    int[] readFrom(WorldCheckpoint.Input in) throws IOException{
+        clear();
+        int n = in.readCount(4 + 8);
+        int[] allKeys = new int[n];
+        long[] allTicks = new long[n];
+        in.readInts(allKeys, n);
+        in.readLongs(allTicks, n);
+        for(int i = 0; i < n; i++){
+            schedule(allKeys[i], allTicks[i]);
+        }
+        return allKeys;
+    }
+}
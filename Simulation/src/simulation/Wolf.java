@@ -1,15 +1,6 @@
 package simulation;
 
-import javafx.scene.image.Image;
-
 public class Wolf extends Animal {
-    // Image for adult wolf
-    private static final Image wolfImage = new Image("images/wolf (Custom).png");
-    // Image for baby wolf
-    private static final Image baby_wolfImage = new Image("images/baby_wolf (Custom).png");
-    // The health a wolf initially has
-    private static final int health = 100;
-
     /**
      * Constructor for the wolf
      *
@@ -19,7 +10,18 @@ public class Wolf extends Animal {
      * @param age - the age of the wolf
      */
     public Wolf (World world, int x, int y, int age) {
-        super(world, x, y, health, age, Sheep.class, wolfImage, baby_wolfImage);
+        // The health a wolf initially has
+        super(world, x, y, world.getConfig().getWolfHealth(), age, Sheep.class);
+    }
+
+    /**
+     * Constructor for a wolf that is already in the world, e.g. one loaded from a checkpoint
+     *
+     * @param world The world the wolf is in
+     * @param slot - the slot the wolf lives in
+     */
+    Wolf (World world, int slot) {
+        super(world, slot, Sheep.class);
     }
     @Override
     public String toString() {
@@ -1,71 +1,190 @@
 package simulation;
 
-import javafx.scene.Group;
-import javafx.scene.Node;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
-
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
- * This class represents a World.
+ * This class represents a World. The World is only the model, it doesn't know anything about JavaFX,
+ * so it can run headless. Anything that wants to show the World registers a WorldListener.
+ *
+ * A World with the parallel tick has a pool of threads of its own, close it when it is no longer needed.
  *
  * @author Mr. Smithe
  */
-public class World {
+public class World implements AutoCloseable {
+
+    //the ring from which findNearest looks for food a square at a time, closer rings are cheaper one by one
+    private static final int FAR_RING = 32;
+
+    //the random streams that set up the World, entity ids are never negative so these can't clash with them
+    private static final long FENCE_STREAM = -1;
+    private static final long PLACEMENT_STREAM = -2;
+
+    //whoever wants to be told about changes in this World, e.g. the view.
+    //looped over by index, so telling them about every move doesn't allocate an iterator.
+    private ArrayList<WorldListener> listeners = new ArrayList<>();
+
+    //the state of all entities, one array per field
+    private final EntityStore store = new EntityStore(1024);
+
+    //true while act is running, entities born in that time only start acting next tick
+    private boolean acting;
+
+    //the number of ticks that have finished
+    private long tick;
+
+    //the seed of all random numbers in this World
+    private final long seed;
+    //places the entities of addRandomEntities, it goes on from one call to the next
+    private final Randomizer placementRandom;
+    //the stream of the Entity whose turn it is in the classic tick
+    private final Randomizer turnRandom;
+
+    //which entities are in which cell
+    private CellIndex cells;
 
-    Group root = new Group();
+    //which cells have grass and which of them can spread
+    private final GrassField grass;
 
-    //a flexible array that doesn't have to have a fixed length.
-    private ArrayList<Entity> entities = new ArrayList<>();
+    //the cells with at least one Entity of every species, what animals look their food up in
+    private final BitGrid[] foodMaps;
 
-    //separate list for different types of entities
-    private ArrayList<Wolf> wolves = new ArrayList<>();
-    private ArrayList<Sheep> sheeps = new ArrayList<>();
-    private ArrayList<Grass> grasses = new ArrayList<>();
+    //the next location sheep and wolves can move to, reused every tick
+    private OccupancyGrid sheepGrid;
+    private OccupancyGrid wolfGrid;
+
+    //runs the tick on several threads, null for the classic one-by-one tick
+    private ParallelTick parallelTick;
+
+    //where the time of a tick goes, null when nobody is profiling
+    private TickProfiler profiler;
+
+    //the settings this world was built from
+    private final WorldConfig config;
 
     //dimensions of our world
-    public static final int MAX_WIDTH = 800;
-    public static final int MAX_HEIGHT = 800;
-    public static final int CELL_SIZE = 50;
-    public static final int ROW = MAX_HEIGHT / CELL_SIZE;
-    public static final int COL = MAX_WIDTH / CELL_SIZE;
+    private final int rows;
+    private final int cols;
 
-    //the map is made up of a grid of squares.
-    private Rectangle[][] map = new Rectangle[ROW][COL];
+    //the location of the fences, and which neighbours of every cell can be walked on
+    private final NavigationGrid navigation;
 
-    //the location of the fences
-    private boolean[][] fences = new boolean[ROW][COL];
+    //how far every cell is from the food of every species, null unless the config asks for them
+    private final FoodField[] foodFields;
 
-    //number of fences to place
-    private final int numFences = 50;
     /**
-     * Constructs the World.
+     * Constructs the classic 16x16 World.
      */
     public World(){
-        for(int i = 0; i < map.length; i++){
-            for(int j = 0; j < map[i].length; j++){
-                Rectangle rectangle = new Rectangle(CELL_SIZE, CELL_SIZE);
-                rectangle.setX(i * CELL_SIZE);
-                rectangle.setY(j * CELL_SIZE);
+        this(new WorldConfig());
+    }
 
-                rectangle.setFill(Color.GREEN);
-                // uncomment to show the grid
-                //rectangle.setStroke(Color.BLACK);
+    /**
+     * Constructs a World from the given settings.
+     *
+     * @param config the settings of the World
+     */
+    public World(WorldConfig config){
+        this(config, true);
+    }
 
-                map[i][j] = rectangle;
-                root.getChildren().add(rectangle);
+    /**
+     * Constructs a World from the given settings, with or without placing its fences.
+     *
+     * @param config the settings of the World
+     * @param placeFences false for a World that is about to be loaded from a checkpoint, see readFrom
+     */
+    World(WorldConfig config, boolean placeFences){
+        if(config.getCellCount() > Integer.MAX_VALUE - 8){
+            throw new IllegalArgumentException("world too big: " + config.getRows() + "x" + config.getCols());
+        }
+        if(config.getNumFences() >= config.getCellCount()){
+            throw new IllegalArgumentException("too many fences: " + config.getNumFences());
+        }
+        this.config = config;
+        rows = config.getRows();
+        cols = config.getCols();
+        seed = config.getSeed();
+        placementRandom = new Randomizer(seed, PLACEMENT_STREAM);
+        turnRandom = new Randomizer(seed, 0);
+        boolean offHeap = config.isOffHeap();
+        if(config.getTerrain() != null && placeFences){
+            // the fences are in the file already
+            try {
+                navigation = TerrainFile.map(config.getTerrain(), rows, cols);
+            } catch (IOException e){
+                throw new UncheckedIOException("can't map the terrain", e);
+            }
+            placeFences = false;
+        }else{
+            navigation = new NavigationGrid(rows, cols, offHeap);
+        }
+        cells = new CellIndex(rows, cols, offHeap);
+        grass = new GrassField(this);
+        foodMaps = new BitGrid[EntityStore.SPECIES_COUNT];
+        for(int kind = 0; kind < foodMaps.length; kind++){
+            foodMaps[kind] = new BitGrid(rows, cols, offHeap);
+        }
+        if(config.isFoodFields()){
+            foodFields = new FoodField[EntityStore.SPECIES_COUNT];
+            for(int kind = 0; kind < foodFields.length; kind++){
+                foodFields[kind] = new FoodField(this);
             }
+        }else{
+            foodFields = null;
+        }
+        sheepGrid = new OccupancyGrid(rows, cols, offHeap);
+        wolfGrid = new OccupancyGrid(rows, cols, offHeap);
+        if(config.isParallel()){
+            parallelTick = new ParallelTick(this, config.getThreads());
+        }
+        if(!placeFences){
+            return;
         }
         // randomly place some fences
+        Randomizer random = new Randomizer(seed, FENCE_STREAM);
+        int x, y;
+        for (int i = 0; i < config.getNumFences(); i++) {
+            do {
+                x = random.getRandomInt(0, rows);
+                y = random.getRandomInt(0, cols);
+            } while (isFence(x, y));
+            navigation.setFence(x, y, true);
+        }
+    }
+
+    /**
+     * Adds a number of entities of the specified class to the world at random locations.
+     *
+     * @param n the number of entities to add
+     * @param c the class of the entities to add
+     */
+    public void addRandomEntities(int n, Class<? extends Entity> c){
+        SpeciesDescriptor<?> species = SpeciesDescriptor.of(c);
+        if(species == null){
+            throw new IllegalArgumentException(c.getSimpleName() + " is not a registered species");
+        }
+        addRandomEntities(n, species);
+    }
+
+    /**
+     * Adds a number of entities of the specified species to the world at random locations.
+     *
+     * @param n the number of entities to add
+     * @param species the species of the entities to add
+     */
+    public void addRandomEntities(int n, SpeciesDescriptor<?> species){
+        BitGrid occupied = new BitGrid(rows, cols, false);    //the occupied locations, a bit each
         int x, y;
-        for (int i = 0; i < numFences; i++) {
+        for (int i = 0; i < n; i++){
             do {
-                x = Simulator.getRandomInt(0, World.ROW);
-                y = Simulator.getRandomInt(0, World.COL);
-            } while (fences[x][y]);
-            fences[x][y] = true;
-            new Fence(this, x, y);
+                x = placementRandom.getRandomInt(0, rows);    //get random x location
+                y = placementRandom.getRandomInt(0, cols);    //get random y location
+            }while(!isValidLocation(x, y) || occupied.get(x, y));   //make sure location is valid and not occupied
+            occupied.set(toCell(x, y));
+            species.spawn(this, x, y, 10);   //create new entity
         }
     }
 
@@ -73,42 +192,118 @@ public class World {
      * Calls the act method of each Entity currently in the World.
      */
     public void act() {
+        TickProfiler profiler = this.profiler;
+        long start = profiler == null ? 0 : System.nanoTime();
+        long lap = start;
+        acting = true;
         // keep track of the next location sheep and wolves can move to
-        boolean[][] sheeps = new boolean[ROW][COL];
-        boolean[][] wolves = new boolean[ROW][COL];
-        // fix the order of display so that wolves are drawn on top of sheep and sheep are drawn on top of grass
-        // for sheep and wolves, we also check whether they are on top of the food.
+        sheepGrid.clear();
+        wolfGrid.clear();
+        // for sheep and wolves, we check whether they are on top of the food.
         // If they are, they will stay in the same place this turn to eat the food, we set the location as occupied so other sheep or wolves cannot move to this location.
-        for(Grass grass : grasses){
-            grass.getNode().toFront();
+        markEatingAnimals(EntityStore.SHEEP, sheepGrid);
+        markEatingAnimals(EntityStore.WOLF, wolfGrid);
+        lap = lap(profiler, TickProfiler.Phase.MARK_EATING, lap);
+        // Wolf should act first, sheep should act next, and grass should spread last.
+        // Entities born during this tick are BORN, not ALIVE, so they don't act yet, and dead entities are DEAD.
+        if(parallelTick != null){
+            parallelTick.actAnimals(EntityStore.WOLF, wolfGrid);
+            lap = lap(profiler, TickProfiler.Phase.WOLVES, lap);
+            parallelTick.actAnimals(EntityStore.SHEEP, sheepGrid);
+            lap = lap(profiler, TickProfiler.Phase.SHEEP, lap);
+        }else{
+            animalsOneByOne(EntityStore.WOLF, wolfGrid);
+            lap = lap(profiler, TickProfiler.Phase.WOLVES, lap);
+            animalsOneByOne(EntityStore.SHEEP, sheepGrid);
+            lap = lap(profiler, TickProfiler.Phase.SHEEP, lap);
         }
-        for(Sheep s: this.sheeps){
-            if(s.isOnFood()){
-                sheeps[s.getX()][s.getY()] = true;
-            }
-            s.getNode().toFront();
+        // grass doesn't take turns, only the edge of every patch can grow when its wake-up comes, see GrassField
+        int woke = grass.spread(tick);
+        if(profiler != null){
+            profiler.count(TickProfiler.Counter.GRASS_FRONTIER, grass.getFrontierCount());
+            profiler.count(TickProfiler.Counter.GRASS_WAKEUPS, woke);
         }
-
-        for(Wolf w: this.wolves){
-            if(w.isOnFood()){
-                wolves[w.getX()][w.getY()] = true;
-            }
-            w.getNode().toFront();
+        lap = lap(profiler, TickProfiler.Phase.GRASS, lap);
+        // newborns can act from now on and the slots of the dead can be reused
+        store.endTick();
+        tick++;
+        acting = false;
+        if(profiler != null){
+            profiler.record(TickProfiler.Phase.END_TICK, lap);
+            profiler.tickFinished(start);
         }
-        // Wolf should act first, sheep should act next, and grass should act last.
-        // Iterate through the copy of current wolves, sheep and grasses to avoid ConcurrentModificationException and prevent newly added entities from acting.
-        // Also, check if the entity is already died to prevent dead entities from acting.
-        for(Wolf w: (ArrayList<Wolf>)this.wolves.clone()){
-            if(!w.isDead())
-                w.act(wolves);
+        for(int i = 0; i < listeners.size(); i++){
+            listeners.get(i).tickFinished();
         }
-        for(Sheep s: (ArrayList<Sheep>)this.sheeps.clone()){
-            if(!s.isDead())
-                s.act(sheeps);
+    }
+
+    /**
+     * The classic tick for animals: every animal of a species acts on its own, one after the other, and
+     * sees what the ones before it did.
+     *
+     * @param kind the species
+     * @param grid the grid of that species
+     */
+    private void animalsOneByOne(byte kind, OccupancyGrid grid){
+        for(int i = 0; i < store.getMemberCount(kind); i++){
+            int slot = store.getMember(kind, i);
+            if(store.getState(slot) == EntityStore.ALIVE){
+                startTurn(slot);
+                ((Animal) store.getEntity(slot)).act(grid);
+            }
         }
-        for(Grass g: (ArrayList<Grass>)this.grasses.clone()){
-            if(!g.isDead())
-                g.act();
+    }
+
+    /**
+     * Records the time of a phase, if somebody is profiling.
+     *
+     * @return when the next phase starts
+     */
+    private static long lap(TickProfiler profiler, TickProfiler.Phase phase, long start){
+        return profiler == null ? 0 : profiler.record(phase, start);
+    }
+
+    /**
+     * Points the turn stream at the stream of an Entity for this tick, so what it draws only depends on the
+     * seed, its id and the tick.
+     *
+     * @param slot the slot of the Entity whose turn it is
+     */
+    private void startTurn(int slot){
+        startTurn(turnRandom, slot);
+    }
+
+    /**
+     * Points a generator at the stream of an Entity for this tick.
+     *
+     * @param random the generator
+     * @param slot the slot of the Entity
+     */
+    public void startTurn(Randomizer random, int slot){
+        random.reset(seed, store.getId(slot), tick);
+    }
+
+    /**
+     * Returns the random numbers of the Entity whose turn it is. Only the thread running the tick may use it.
+     *
+     * @return the turn stream
+     */
+    public Randomizer getRandom(){
+        return turnRandom;
+    }
+
+    /**
+     * Marks the cells of all animals of a species that are standing on food, they stay there to eat.
+     *
+     * @param kind the species
+     * @param grid the grid of that species
+     */
+    private void markEatingAnimals(byte kind, OccupancyGrid grid){
+        for(int i = 0; i < store.getMemberCount(kind); i++){
+            int slot = store.getMember(kind, i);
+            if(store.getState(slot) == EntityStore.ALIVE && ((Animal) store.getEntity(slot)).isOnFood()){
+                grid.occupy(store.getX(slot), store.getY(slot));
+            }
         }
     }
 
@@ -118,23 +313,88 @@ public class World {
      * @param entity the Entity to add
      */
     public void add_to_list(Entity entity){
-        if(entity instanceof Wolf){
-            wolves.add((Wolf) entity);
-        }else if(entity instanceof Sheep){
-            sheeps.add((Sheep) entity);
-        }else if(entity instanceof Grass){
-            grasses.add((Grass) entity);
+        byte kind = SpeciesDescriptor.kindOf(entity);
+        store.activate(entity.getSlot(), kind, acting);
+        cells.add(entity.getSlot(), entity.getX(), entity.getY());
+        if(kind != EntityStore.NONE){
+            foodMaps[kind].set(toCell(entity.getX(), entity.getY()));
+        }
+        if(kind == EntityStore.GRASS){
+            grass.add(entity.getX(), entity.getY());
+        }
+        if(foodFields != null && kind != EntityStore.NONE){
+            foodFields[kind].added(toCell(entity.getX(), entity.getY()));
+        }
+        for(int i = 0; i < listeners.size(); i++){
+            listeners.get(i).entityAdded(entity);
         }
-        entities.add(entity);
     }
 
     /**
-     * Adds the node of the entity to the root.
+     * Keeps the cell index up to date when a Sprite changes its location.
      *
-     * @param node the node to add
+     * @param sprite the Sprite that changed its location
+     * @param fromX the x-coordinate it came from
+     * @param fromY the y-coordinate it came from
      */
-    public void add_to_root(Node node){
-        root.getChildren().add(node);
+    public void relocated(Sprite sprite, int fromX, int fromY){
+        if(store.isLiving(sprite.getSlot())){
+            cells.move(sprite.getSlot(), fromX, fromY, sprite.getX(), sprite.getY());
+            byte kind = store.getSpecies(sprite.getSlot());
+            if(kind != EntityStore.NONE){
+                left(kind, fromX, fromY);
+                foodMaps[kind].set(toCell(sprite.getX(), sprite.getY()));
+            }
+            if(kind == EntityStore.GRASS){
+                grass.add(sprite.getX(), sprite.getY());
+            }
+            if(foodFields != null && kind != EntityStore.NONE){
+                foodFields[kind].removed(toCell(fromX, fromY));
+                foodFields[kind].added(toCell(sprite.getX(), sprite.getY()));
+            }
+        }
+    }
+
+    /**
+     * Tells the listeners that an Entity has moved.
+     *
+     * @param entity the Entity that moved
+     * @param fromX the x-coordinate it came from
+     * @param fromY the y-coordinate it came from
+     */
+    public void moved(Entity entity, int fromX, int fromY){
+        for(int i = 0; i < listeners.size(); i++){
+            listeners.get(i).entityMoved(entity, fromX, fromY);
+        }
+    }
+
+    /**
+     * Tells the listeners that an Entity might look different now.
+     *
+     * @param entity the Entity that changed
+     */
+    public void changed(Entity entity){
+        for(int i = 0; i < listeners.size(); i++){
+            listeners.get(i).entityChanged(entity);
+        }
+    }
+
+    /**
+     * Registers a listener that is told about everything that happens in this World.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(WorldListener listener){
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(WorldListener listener){
+        listeners.remove(listener);
     }
 
     /**
@@ -143,15 +403,59 @@ public class World {
      * @param entity the Entity to remove
      */
     public void remove(Entity entity){
-        if(entity instanceof Wolf){
-            wolves.remove((Wolf) entity);
-        }else if(entity instanceof Sheep){
-            sheeps.remove((Sheep) entity);
-        }else if(entity instanceof Grass){
-            grasses.remove((Grass) entity);
+        remove(entity, DeathCause.REMOVED);
+    }
+
+    /**
+     * Removes a given Entity from the World.
+     *
+     * @param entity the Entity to remove
+     * @param cause why it is removed
+     */
+    public void remove(Entity entity, DeathCause cause){
+        if(entity.isDead()){
+            return;
+        }
+        cells.remove(entity.getSlot(), entity.getX(), entity.getY());
+        byte kind = store.getSpecies(entity.getSlot());
+        store.kill(entity.getSlot());
+        if(kind != EntityStore.NONE){
+            left(kind, entity.getX(), entity.getY());
+        }
+        if(foodFields != null && kind != EntityStore.NONE){
+            foodFields[kind].removed(toCell(entity.getX(), entity.getY()));
+        }
+        for(int i = 0; i < listeners.size(); i++){
+            listeners.get(i).entityRemoved(entity, cause);
+        }
+    }
+
+    /**
+     * Clears the bit of a cell in the map of a species that left it, unless more of the species is in it.
+     * For grass the GrassField is told as well.
+     */
+    private void left(byte kind, int x, int y){
+        for(int slot = cells.first(x, y); slot >= 0; slot = cells.next(slot)){
+            if(store.getSpecies(slot) == kind){
+                return;
+            }
+        }
+        foodMaps[kind].clear(toCell(x, y));
+        if(kind == EntityStore.GRASS){
+            grass.remove(x, y);
+        }
+    }
+
+    /**
+     * Tells the listeners that an Entity ate another one.
+     *
+     * @param eater the Entity that ate
+     * @param food the Entity that was eaten, not removed yet
+     */
+    public void ate(Entity eater, Entity food){
+        for(int i = 0; i < listeners.size(); i++){
+            listeners.get(i).entityAte(eater, food);
         }
-        entities.remove(entity);
-        root.getChildren().remove(entity.getNode());
     }
 
     /**
@@ -163,14 +467,22 @@ public class World {
      */
     public ArrayList<Entity> getEntitiesAt(int x, int y) {
         ArrayList<Entity> answer = new ArrayList<Entity>();
+        getEntitiesAt(x, y, answer);
+        return answer;
+    }
 
-        for(Entity entity : entities){
-            if(entity.getX() == x && entity.getY() == y){
-                answer.add(entity);
-            }
+    /**
+     * Puts all entities at a given location into a list the caller already has, so nothing is allocated.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @param answer the list to fill, it is cleared first
+     */
+    public void getEntitiesAt(int x, int y, List<Entity> answer) {
+        answer.clear();
+        for(int slot = cells.first(x, y); slot >= 0; slot = cells.next(slot)){
+            answer.add(store.getEntity(slot));
         }
-
-        return answer;
     }
 
     /**
@@ -182,14 +494,139 @@ public class World {
      * @return the Entity, if one exists. null otherwise.
      */
     public Entity getOneEntityAt(int x, int y, Class c){
-        for(Entity entity : entities){
-            if(entity.getClass() == c && entity.getX() == x && entity.getY() == y){
-                return entity;
+        byte kind = SpeciesDescriptor.kindOf(c);
+        if(kind != EntityStore.NONE && !foodMaps[kind].get(x, y)){
+            // most cells have none of the species, its map says so without walking the cell
+            return null;
+        }
+        for(int slot = cells.first(x, y); slot >= 0; slot = cells.next(slot)){
+            if(kind != EntityStore.NONE ? store.getSpecies(slot) == kind : store.getEntity(slot).getClass() == c){
+                return store.getEntity(slot);
             }
         }
         return null;
     }
 
+    /**
+     * Finds the closest Entity of the given type, measured in steps (Manhattan distance).
+     *
+     * The search goes ring by ring outwards from (x, y), so it only looks at the cells that are closer
+     * than the food it finds. If the rings get bigger than the number of entities of that type, it is
+     * cheaper to just go through all of them, so it does that instead. Either way the answer is the same:
+     * ties are broken by the smaller x-coordinate, then the smaller y-coordinate, then the order in the cell.
+     * A search for a species that gets far from (x, y) skips the rings that have none of it at all, which
+     * the map of the species can tell 64 cells at a time.
+     *
+     * @param x the x-coordinate to search from
+     * @param y the y-coordinate to search from
+     * @param c the class of the Entity we are looking for
+     * @param blocked locations that should be skipped, may be null
+     * @return the closest Entity, null if there is none
+     */
+    public Entity findNearest(int x, int y, Class<?> c, OccupancyGrid blocked){
+        TickProfiler profiler = this.profiler;
+        if(profiler != null){
+            profiler.count(TickProfiler.Counter.NEAREST_SEARCHES);
+        }
+        byte kind = SpeciesDescriptor.kindOf(c);
+        int count = kind == EntityStore.NONE ? store.size() : store.getPopulation(kind);
+        if(count == 0){
+            return null;
+        }
+        // the furthest any cell can be from (x, y)
+        int maxDist = Math.max(x, rows - 1 - x) + Math.max(y, cols - 1 - y);
+        int visited = 0;
+        for(int d = 0; d <= maxDist; d++){
+            if(d == FAR_RING && kind != EntityStore.NONE){
+                d = freeRadius(foodMaps[kind], x, y, d, maxDist) + 1;
+                if(d > maxDist){
+                    break;
+                }
+            }
+            // cells at distance d, in order of x and then y
+            for(int dx = -d; dx <= d; dx++){
+                int cx = x + dx;
+                if(cx < 0 || cx >= rows){
+                    continue;
+                }
+                int r = d - Math.abs(dx);
+                Entity found = nearestIn(cx, y - r, c, blocked);
+                if(found == null && r != 0){
+                    found = nearestIn(cx, y + r, c, blocked);
+                }
+                if(found != null){
+                    if(profiler != null){
+                        profiler.count(TickProfiler.Counter.NEAREST_CELLS, visited + (d == 0 ? 1 : 4 * d));
+                    }
+                    return found;
+                }
+            }
+            visited += d == 0 ? 1 : 4 * d;
+            if(visited > count){
+                break;
+            }
+        }
+        if(profiler != null){
+            profiler.count(TickProfiler.Counter.NEAREST_CELLS, visited);
+            profiler.count(TickProfiler.Counter.NEAREST_SCANS);
+        }
+        // the rings got too big, check every candidate instead
+        int bestX = -1, bestY = -1;
+        int bestDist = Integer.MAX_VALUE;
+        int n = kind == EntityStore.NONE ? store.size() : store.getMemberCount(kind);
+        for(int i = 0; i < n; i++){
+            int slot = kind == EntityStore.NONE ? i : store.getMember(kind, i);
+            if(!store.isLiving(slot) || (kind == EntityStore.NONE && store.getEntity(slot).getClass() != c)){
+                continue;
+            }
+            int ex = store.getX(slot), ey = store.getY(slot);
+            if(blocked != null && blocked.isOccupied(ex, ey)){
+                continue;
+            }
+            int d = Math.abs(ex - x) + Math.abs(ey - y);
+            if(d < bestDist || (d == bestDist && (ex < bestX || (ex == bestX && ey < bestY)))){
+                bestDist = d;
+                bestX = ex;
+                bestY = ey;
+            }
+        }
+        return bestX < 0 ? null : getOneEntityAt(bestX, bestY, c);
+    }
+
+    /**
+     * Returns the largest distance from (x, y) within which a map has no cell set, given that there is none
+     * closer than from. The squares around (x, y) are looked at with doubling and then halving sizes, an
+     * empty square has none of the rings inside it either.
+     */
+    private static int freeRadius(BitGrid map, int x, int y, int from, int maxDist){
+        int empty = from - 1;
+        int r = from;
+        while(r <= maxDist && !map.any(x - r, y - r, x + r, y + r)){
+            empty = r;
+            r <<= 1;
+        }
+        // the square of empty is empty, the one of r is not or covers the World
+        while(r - empty > 1){
+            int middle = (empty + r) >>> 1;
+            if(map.any(x - middle, y - middle, x + middle, y + middle)){
+                r = middle;
+            }else{
+                empty = middle;
+            }
+        }
+        return empty;
+    }
+
+    /**
+     * Returns the first Entity of the given type in a cell, if the cell is inside the World and not blocked.
+     */
+    private Entity nearestIn(int x, int y, Class<?> c, OccupancyGrid blocked){
+        if(y < 0 || y >= cols || (blocked != null && blocked.isOccupied(x, y))){
+            return null;
+        }
+        return getOneEntityAt(x, y, c);
+    }
+
     /**
      * Returns a list of all entities of the given type.
      * @param c the class of the Entity we are looking for
@@ -197,21 +634,363 @@ public class World {
      */
     public ArrayList<Entity> getEntities(Class c){
         ArrayList<Entity> answer = new ArrayList<Entity>();
-        for(Entity entity : entities){
-            if(entity.getClass() == c){
-                answer.add(entity);
+        getEntities(c, answer);
+        return answer;
+    }
+
+    /**
+     * Puts all entities of the given type into a list the caller already has, so nothing is allocated.
+     *
+     * @param c the class of the Entity we are looking for
+     * @param answer the list to fill, it is cleared first
+     */
+    public void getEntities(Class<?> c, List<Entity> answer){
+        answer.clear();
+        for(int slot = 0; slot < store.size(); slot++){
+            if(store.isLiving(slot) && store.getEntity(slot).getClass() == c){
+                answer.add(store.getEntity(slot));
+            }
+        }
+    }
+
+    /**
+     * Returns all entities currently in the World.
+     *
+     * @return the List of Entities
+     */
+    public ArrayList<Entity> getEntities(){
+        ArrayList<Entity> answer = new ArrayList<Entity>();
+        for(int slot = 0; slot < store.size(); slot++){
+            if(store.isLiving(slot)){
+                answer.add(store.getEntity(slot));
             }
         }
         return answer;
     }
 
     /**
-     * Returns the container for all visuals of this World.
+     * Writes everything that decides how this World goes on to a checkpoint, see WorldCheckpoint: the tick,
+     * the placement stream, the fences, the store and the order of the entities in every cell. Only works
+     * between ticks.
+     *
+     * @param out where to write
+     * @throws IOException if writing fails
+     */
+    void writeTo(BinaryOutput out) throws IOException{
+        if(acting){
+            throw new IllegalStateException("can't save a World in the middle of a tick");
+        }
+        out.writeLong(tick);
+        out.writeLong(placementRandom.getKey());
+        out.writeLong(placementRandom.getCounter());
+        long[] words = new long[(rows * cols + 63) / 64];
+        for(int cell = 0; cell < rows * cols; cell++){
+            if(!navigation.isPassable(cell)){
+                words[cell >>> 6] |= 1L << cell;
+            }
+        }
+        out.writeLongs(words, words.length);
+        store.writeTo(out);
+        // where every Entity is in the list of its cell, the first one is 0
+        short[] rank = new short[store.size()];
+        for(int slot = 0; slot < store.size(); slot++){
+            if(!store.isLiving(slot)){
+                continue;
+            }
+            if(store.getSpecies(slot) == EntityStore.NONE){
+                throw new IllegalStateException("can't save " + store.getEntity(slot) + ", it is not a registered species");
+            }
+            if(cells.first(store.getX(slot), store.getY(slot)) == slot){
+                int r = 0;
+                for(int s = slot; s >= 0; s = cells.next(s)){
+                    if(r > Short.MAX_VALUE){
+                        throw new IllegalStateException("too many entities at " + store.getX(slot) + ", " + store.getY(slot));
+                    }
+                    rank[s] = (short) r++;
+                }
+            }
+        }
+        out.writeShorts(rank, rank.length);
+        grass.writeTo(out);
+    }
+
+    /**
+     * Loads what writeTo wrote into this World, which must be new and have no fences yet. Makes a handle
+     * for every Entity and fills the cells in the saved order, so the World goes on exactly like the one
+     * that was saved.
+     *
+     * @param in where to read from
+     * @throws IOException if the checkpoint is broken
+     */
+    void readFrom(WorldCheckpoint.Input in) throws IOException{
+        tick = in.readLong();
+        long key = in.readLong();
+        placementRandom.restore(key, in.readLong());
+        long[] words = new long[(rows * cols + 63) / 64];
+        in.readLongs(words, words.length);
+        for(int cell = 0; cell < rows * cols; cell++){
+            if((words[cell >>> 6] & 1L << cell) != 0){
+                navigation.setFence(cellX(cell), cellY(cell), true);
+            }
+        }
+        store.readFrom(in);
+        short[] rank = new short[store.size()];
+        in.readShorts(rank, rank.length);
+        int maxRank = 0;
+        for(int slot = 0; slot < store.size(); slot++){
+            if(!store.isLiving(slot)){
+                continue;
+            }
+            if(store.getSpecies(slot) == EntityStore.NONE){
+                throw in.corrupt("slot " + slot + " has no species");
+            }
+            if(!isValidLocation(store.getX(slot), store.getY(slot))){
+                throw in.corrupt("slot " + slot + " is off the map");
+            }
+            if(rank[slot] < 0){
+                throw in.corrupt("slot " + slot + " has rank " + rank[slot]);
+            }
+            SpeciesDescriptor.of(store.getSpecies(slot)).restore(this, slot);
+            maxRank = Math.max(maxRank, rank[slot]);
+        }
+        // a cell list grows at the front, so the last in the list goes in first
+        for(int r = maxRank; r >= 0; r--){
+            for(int slot = 0; slot < store.size(); slot++){
+                if(store.isLiving(slot) && rank[slot] == r){
+                    cells.add(slot, store.getX(slot), store.getY(slot));
+                    foodMaps[store.getSpecies(slot)].set(toCell(store.getX(slot), store.getY(slot)));
+                }
+            }
+        }
+        // the grass field follows from where the grass is, only its wake-ups are saved
+        for(int i = 0; i < store.getMemberCount(EntityStore.GRASS); i++){
+            int slot = store.getMember(EntityStore.GRASS, i);
+            if(store.isLiving(slot)){
+                grass.mark(store.getX(slot), store.getY(slot));
+            }
+        }
+        grass.rebuild();
+        grass.readFrom(in);
+        if(foodFields != null){
+            for(int slot = 0; slot < store.size(); slot++){
+                if(store.isLiving(slot)){
+                    foodFields[store.getSpecies(slot)].added(toCell(store.getX(slot), store.getY(slot)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Sums up where every living Entity is and how it is doing, in slot order, e.g. to check that two runs
+     * ended the same way.
+     *
+     * @return a number that is the same for Worlds that are the same, and almost never for others
+     */
+    long fingerprint(){
+        long hash = tick;
+        for(int slot = 0; slot < store.size(); slot++){
+            if(!store.isLiving(slot)){
+                continue;
+            }
+            hash = Randomizer.mix(hash ^ store.getId(slot));
+            hash = Randomizer.mix(hash ^ toCell(store.getX(slot), store.getY(slot)));
+            hash = Randomizer.mix(hash ^ ((long) store.getHealth(slot) << 32 | store.getAge(slot) & 0xFFFFFFFFL));
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the number of living entities in the World.
+     *
+     * @return the number of entities
+     */
+    public int getEntityCount(){
+        int count = 0;
+        for(int kind = 0; kind < EntityStore.SPECIES_COUNT; kind++){
+            count += store.getPopulation((byte) kind);
+        }
+        return count;
+    }
+
+    /**
+     * Starts or stops profiling this World. Only the thread that runs the World may call this.
+     *
+     * @param profiler the profiler, null to stop
+     */
+    public void setProfiler(TickProfiler profiler){
+        this.profiler = profiler;
+    }
+
+    /**
+     * Stops the threads of the parallel tick, if this World has them. Nothing else needs closing, and a
+     * World without the parallel tick can be dropped without it.
+     */
+    @Override
+    public void close(){
+        if(parallelTick != null){
+            parallelTick.close();
+        }
+    }
+
+    /**
+     * Returns the profiler of this World.
+     *
+     * @return the profiler, null when nobody is profiling
+     */
+    public TickProfiler getProfiler(){
+        return profiler;
+    }
+
+    /**
+     * Returns which cells can be walked on.
+     *
+     * @return the NavigationGrid
+     */
+    public NavigationGrid getNavigation(){
+        return navigation;
+    }
+
+    /**
+     * Returns how far every cell is from the nearest food of a species.
+     *
+     * @param food the class of the food
+     * @return the FoodField, null if the World has no food fields (see WorldConfig.setFoodFields) or the
+     * class is not a registered species
+     */
+    public FoodField getFoodField(Class<?> food){
+        byte kind = SpeciesDescriptor.kindOf(food);
+        return foodFields == null || kind == EntityStore.NONE ? null : foodFields[kind];
+    }
+
+    /**
+     * Returns which cells have grass.
+     *
+     * @return the GrassField
+     */
+    public GrassField getGrass(){
+        return grass;
+    }
+
+    /**
+     * Returns the store that holds the state of every Entity in this World.
+     *
+     * @return the EntityStore
+     */
+    public EntityStore getStore(){
+        return store;
+    }
+
+    /**
+     * Returns the number of ticks that have finished.
+     *
+     * @return the tick number
+     */
+    public long getTick(){
+        return tick;
+    }
+
+    /**
+     * Returns the seed of all random numbers in this World.
+     *
+     * @return the seed
+     */
+    public long getSeed(){
+        return seed;
+    }
+
+    /**
+     * Returns the settings this World was built from.
      *
-     * @return the root node
+     * @return the config
      */
-    public Group getRoot(){
-        return root;
+    public WorldConfig getConfig(){
+        return config;
+    }
+
+    /**
+     * Returns the number of possible x-coordinates.
+     *
+     * @return the number of rows
+     */
+    public int getRows(){
+        return rows;
+    }
+
+    /**
+     * Returns the number of possible y-coordinates.
+     *
+     * @return the number of columns
+     */
+    public int getCols(){
+        return cols;
+    }
+
+    /**
+     * Turns a location into a single cell number.
+     *
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return the cell number
+     */
+    public int toCell(int x, int y){
+        return x * cols + y;
+    }
+
+    /**
+     * Returns the x-coordinate of a cell number.
+     *
+     * @param cell the cell number
+     * @return the x-coordinate
+     */
+    public int cellX(int cell){
+        return cell / cols;
+    }
+
+    /**
+     * Returns the y-coordinate of a cell number.
+     *
+     * @param cell the cell number
+     * @return the y-coordinate
+     */
+    public int cellY(int cell){
+        return cell % cols;
+    }
+
+    /**
+     * Checks if there is a fence at the given location.
+     * @param x the x-coordinate
+     * @param y the y-coordinate
+     * @return true if there is a fence
+     */
+    public boolean isFence(int x, int y){
+        return !navigation.isPassable(toCell(x, y));
+    }
+
+    /**
+     * Puts up or takes down a fence between ticks. Grass and food fields find their way around it from
+     * then on.
+     *
+     * @param x the x-coordinate, must be inside the World
+     * @param y the y-coordinate, must be inside the World
+     * @param fence true to put up a fence, the cell must then be empty
+     */
+    public void setFence(int x, int y, boolean fence){
+        if(acting){
+            throw new IllegalStateException("can't change fences in the middle of a tick");
+        }
+        if(fence == isFence(x, y)){
+            return;
+        }
+        if(fence && cells.first(x, y) >= 0){
+            throw new IllegalArgumentException("can't put a fence on " + x + ", " + y + ", it isn't empty");
+        }
+        navigation.setFence(x, y, fence);
+        grass.fenceChanged(x, y);
+        if(foodFields != null){
+            for(FoodField field : foodFields){
+                field.changed(toCell(x, y));
+            }
+        }
     }
 
     /**
@@ -221,6 +1000,6 @@ public class World {
      * @return true if the coordinates are valid, false otherwise
      */
     public boolean isValidLocation(int x, int y){
-        return x >= 0 && x < ROW && y >= 0 && y < COL && !fences[x][y];
+        return navigation.isPassable(x, y);
     }
 }
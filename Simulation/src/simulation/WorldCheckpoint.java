@@ -0,0 +1,235 @@
+package simulation;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves a World to a file and loads it again, so a long run can go on after a crash and experiments can
+ * be forked from an interesting state. A loaded World goes on exactly like the saved one would have: it
+ * has the same entities in the same slots, the same ids, member lists and cell order, and its random
+ * streams are where they were.
+ *
+ * The file is the EntityStore written out column by column (all x-coordinates, then all y-coordinates...),
+ * little-endian, so saving and loading are bulk copies of the store's arrays:
+ * <pre>
+ * int magic, int version
+ * config: int rows, cols, cellSize, fences, threads, tileSize, byte parallel, byte foodFields, byte offHeap,
+ *         long seed, int wolfHealth, sheepHealth, grassHealth, wanderCost, seekCost, healthyAbove, adultAge, maxAge
+ * World: long tick, long placement key, long placement counter, long[] fence bits, one per cell
+ * store: int size, long next id, int[size] x, y, health, age, long[size] id, byte[size] species, state,
+ *        int free count, int[] free slots, per species: int member count, int[] members
+ * World: short[size] place of every slot in its cell's list,
+ *        grass wake-ups: int count, int[count] cells, long[count] ticks
+ * </pre>
+ * Saving writes through a FileChannel into a file next to the checkpoint, which then replaces it, so a
+ * crash while saving doesn't destroy the last checkpoint. Loading maps the file into memory, so it
+ * must be smaller than 2 GB.
+ *
+ * A World can only be saved between ticks, by the thread that runs it (see TickScheduler.submit).
+ *
+ * @author Layton Zhou
+ */
+public final class WorldCheckpoint {
+
+    // "GRSW"
+    private static final int MAGIC = 0x47525357;
+    private static final int VERSION = 5;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private WorldCheckpoint(){
+    }
+
+    /**
+     * Saves a World to a file, replacing the file if it exists.
+     *
+     * @param world the World, it must not be in the middle of a tick
+     * @param file the file to write
+     * @throws IOException if writing fails, the old file is then left alone
+     */
+    public static void save(World world, Path file) throws IOException{
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            BinaryOutput out = new BinaryOutput(channel, BUFFER_SIZE);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            WorldConfig config = world.getConfig();
+            out.writeInt(config.getRows());
+            out.writeInt(config.getCols());
+            out.writeInt(config.getCellSize());
+            out.writeInt(config.getNumFences());
+            out.writeInt(config.getThreads());
+            out.writeInt(config.getTileSize());
+            out.writeByte((byte) (config.isParallel() ? 1 : 0));
+            out.writeByte((byte) (config.isFoodFields() ? 1 : 0));
+            out.writeByte((byte) (config.isOffHeap() ? 1 : 0));
+            out.writeLong(config.getSeed());
+            out.writeInt(config.getWolfHealth());
+            out.writeInt(config.getSheepHealth());
+            out.writeInt(config.getGrassHealth());
+            out.writeInt(config.getWanderCost());
+            out.writeInt(config.getSeekCost());
+            out.writeInt(config.getHealthyAbove());
+            out.writeInt(config.getAdultAge());
+            out.writeInt(config.getMaxAge());
+            world.writeTo(out);
+            out.flush();
+            channel.force(false);
+        }catch(IOException | RuntimeException e){
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a World from a file.
+     *
+     * @param file the file to read
+     * @return the World, it has no listeners
+     * @throws IOException if reading fails or the file is not a checkpoint
+     */
+    public static World load(Path file) throws IOException{
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            if(channel.size() > Integer.MAX_VALUE){
+                throw new IOException("checkpoint too big to map: " + file);
+            }
+            Input in = new Input(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if(channel.size() < 8 || in.readInt() != MAGIC){
+                throw new IOException("not a checkpoint: " + file);
+            }
+            int version = in.readInt();
+            if(version != VERSION){
+                throw new IOException("unknown checkpoint version " + version + ": " + file);
+            }
+            WorldConfig config = new WorldConfig()
+                    .setRows(in.readInt())
+                    .setCols(in.readInt())
+                    .setCellSize(in.readInt())
+                    .setNumFences(in.readInt())
+                    .setThreads(in.readInt())
+                    .setTileSize(in.readInt())
+                    .setParallel(in.readByte() != 0)
+                    .setFoodFields(in.readByte() != 0)
+                    .setOffHeap(in.readByte() != 0)
+                    .setSeed(in.readLong())
+                    .setWolfHealth(in.readInt())
+                    .setSheepHealth(in.readInt())
+                    .setGrassHealth(in.readInt())
+                    .setWanderCost(in.readInt())
+                    .setSeekCost(in.readInt())
+                    .setHealthyAbove(in.readInt())
+                    .setAdultAge(in.readInt())
+                    .setMaxAge(in.readInt());
+            World world = new World(config, false);
+            try {
+                world.readFrom(in);
+                if(in.remaining() != 0){
+                    throw in.corrupt(in.remaining() + " bytes left over");
+                }
+            }catch(IOException | RuntimeException e){
+                world.close();
+                throw e;
+            }
+            return world;
+        }catch(BufferUnderflowException e){
+            throw new IOException("checkpoint is cut short: " + file, e);
+        }catch(IllegalArgumentException e){
+            throw new IOException("corrupt checkpoint: " + e.getMessage() + ": " + file, e);
+        }
+    }
+
+    /**
+     * Reads primitives and arrays of them from a buffer, usually a mapped file. Reading past the end
+     * throws a BufferUnderflowException.
+     */
+    static final class Input {
+
+        private final ByteBuffer buffer;
+
+        Input(ByteBuffer buffer){
+            this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        byte readByte(){
+            return buffer.get();
+        }
+
+        int readInt(){
+            return buffer.getInt();
+        }
+
+        long readLong(){
+            return buffer.getLong();
+        }
+
+        /**
+         * Reads the length of an array and checks that the file is long enough to hold it.
+         *
+         * @param bytesPerValue the number of bytes every value of the array takes in the file
+         * @return the length
+         */
+        int readCount(int bytesPerValue) throws IOException{
+            int n = buffer.getInt();
+            if(n < 0 || (long) n * bytesPerValue > buffer.remaining()){
+                throw corrupt("bad length " + n);
+            }
+            return n;
+        }
+
+        /**
+         * Reads n values into the start of an array.
+         */
+        void readBytes(byte[] values, int n){
+            buffer.get(values, 0, n);
+        }
+
+        /**
+         * Reads n values into the start of an array.
+         */
+        void readShorts(short[] values, int n){
+            buffer.asShortBuffer().get(values, 0, n);
+            buffer.position(buffer.position() + n * 2);
+        }
+
+        /**
+         * Reads n values into the start of an array.
+         */
+        void readInts(int[] values, int n){
+            buffer.asIntBuffer().get(values, 0, n);
+            buffer.position(buffer.position() + n * 4);
+        }
+
+        /**
+         * Reads n values into the start of an array.
+         */
+        void readLongs(long[] values, int n){
+            buffer.asLongBuffer().get(values, 0, n);
+            buffer.position(buffer.position() + n * 8);
+        }
+
+        /**
+         * Returns the number of bytes that haven't been read.
+         */
+        int remaining(){
+            return buffer.remaining();
+        }
+
+        /**
+         * Makes the exception for something in the file that doesn't make sense.
+         *
+         * @param what what is wrong
+         * @return the exception to throw
+         */
+        IOException corrupt(String what){
+            return new IOException("corrupt checkpoint: " + what);
+        }
+    }
+}
@@ -0,0 +1,565 @@
+package simulation;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The settings a World is built from. The defaults give the classic 16x16 world with 50 fences, and the
+ * health and age rules the animals always had.
+ *
+ * The setters return the config itself, so settings can be chained:
+ * {@code new WorldConfig().setRows(4096).setCols(4096).setNumFences(100000)}
+ *
+ * @author Layton Zhou
+ */
+public class WorldConfig {
+
+    //number of possible x-coordinates
+    private int rows = 16;
+    //number of possible y-coordinates
+    private int cols = 16;
+    //size of a cell on screen, in pixels. Only the view cares about this.
+    private int cellSize = 50;
+    //number of fences to place
+    private int numFences = 50;
+    //number of threads a tick runs on, 1 runs the classic one-by-one tick
+    private int threads = 1;
+    //size of the square tiles the grid is cut into for the parallel tick
+    private int tileSize = 64;
+    //true to use the parallel tick even on a single thread
+    private boolean parallel;
+    //true to let hungry animals follow a FoodField instead of heading straight for the nearest food
+    private boolean foodFields;
+    //true to keep the per-cell grids outside of the heap
+    private boolean offHeap;
+    //the file the fences are mapped from, null to place them at random
+    private Path terrain;
+    //the health a wolf is born with
+    private int wolfHealth = 100;
+    //the health a sheep is born with
+    private int sheepHealth = 100;
+    //the health grass has, which is what a sheep gets for eating it
+    private int grassHealth = 5;
+    //the health an animal loses when it wanders
+    private int wanderCost = 10;
+    //the health an animal loses for a step towards food
+    private int seekCost = 5;
+    //an animal with more health than this wanders, one with less seeks food
+    private int healthyAbove = 50;
+    //the age from which an animal breeds
+    private int adultAge = 10;
+    //an animal older than this dies of old age
+    private int maxAge = 20;
+    //the seed of all random numbers, a run with the same seed and settings does exactly the same
+    private long seed = Randomizer.mix(System.nanoTime());
+
+    /**
+     * Creates a config with the default settings.
+     */
+    public WorldConfig(){
+    }
+
+    /**
+     * Creates a config from "key=value" arguments, e.g. from the command line.
+     * Known keys are rows, cols, cellSize, fences, threads, tileSize, parallel, foodFields, offHeap, terrain, seed
+     * and the names of the health and age settings (wolfHealth, sheepHealth, grassHealth, wanderCost, seekCost,
+     * healthyAbove, adultAge, maxAge), anything else is ignored so callers can mix in their own arguments.
+     *
+     * @param args the arguments
+     * @return the config
+     */
+    public static WorldConfig parse(String... args){
+        WorldConfig config = new WorldConfig();
+        for(String arg : args){
+            int eq = arg.indexOf('=');
+            if(eq < 0){
+                continue;
+            }
+            String key = arg.substring(0, eq);
+            String value = arg.substring(eq + 1);
+            switch (key){
+                case "rows": config.setRows(Integer.parseInt(value)); break;
+                case "cols": config.setCols(Integer.parseInt(value)); break;
+                case "cellSize": config.setCellSize(Integer.parseInt(value)); break;
+                case "fences": config.setNumFences(Integer.parseInt(value)); break;
+                case "threads": config.setThreads(Integer.parseInt(value)); break;
+                case "tileSize": config.setTileSize(Integer.parseInt(value)); break;
+                case "parallel": config.setParallel(Boolean.parseBoolean(value)); break;
+                case "foodFields": config.setFoodFields(Boolean.parseBoolean(value)); break;
+                case "offHeap": config.setOffHeap(Boolean.parseBoolean(value)); break;
+                case "terrain": config.setTerrain(Paths.get(value)); break;
+                case "wolfHealth": config.setWolfHealth(Integer.parseInt(value)); break;
+                case "sheepHealth": config.setSheepHealth(Integer.parseInt(value)); break;
+                case "grassHealth": config.setGrassHealth(Integer.parseInt(value)); break;
+                case "wanderCost": config.setWanderCost(Integer.parseInt(value)); break;
+                case "seekCost": config.setSeekCost(Integer.parseInt(value)); break;
+                case "healthyAbove": config.setHealthyAbove(Integer.parseInt(value)); break;
+                case "adultAge": config.setAdultAge(Integer.parseInt(value)); break;
+                case "maxAge": config.setMaxAge(Integer.parseInt(value)); break;
+                case "seed": config.setSeed(Long.parseLong(value)); break;
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Returns the number of possible x-coordinates.
+     *
+     * @return the number of rows
+     */
+    public int getRows(){
+        return rows;
+    }
+
+    /**
+     * Sets the number of possible x-coordinates.
+     *
+     * @param rows the number of rows
+     * @return this config
+     */
+    public WorldConfig setRows(int rows){
+        if(rows <= 0){
+            throw new IllegalArgumentException("rows must be positive: " + rows);
+        }
+        this.rows = rows;
+        return this;
+    }
+
+    /**
+     * Returns the number of possible y-coordinates.
+     *
+     * @return the number of columns
+     */
+    public int getCols(){
+        return cols;
+    }
+
+    /**
+     * Sets the number of possible y-coordinates.
+     *
+     * @param cols the number of columns
+     * @return this config
+     */
+    public WorldConfig setCols(int cols){
+        if(cols <= 0){
+            throw new IllegalArgumentException("cols must be positive: " + cols);
+        }
+        this.cols = cols;
+        return this;
+    }
+
+    /**
+     * Returns the size of a cell on screen.
+     *
+     * @return the cell size in pixels
+     */
+    public int getCellSize(){
+        return cellSize;
+    }
+
+    /**
+     * Sets the size of a cell on screen.
+     *
+     * @param cellSize the cell size in pixels
+     * @return this config
+     */
+    public WorldConfig setCellSize(int cellSize){
+        if(cellSize <= 0){
+            throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        return this;
+    }
+
+    /**
+     * Returns the number of fences to place.
+     *
+     * @return the number of fences
+     */
+    public int getNumFences(){
+        return numFences;
+    }
+
+    /**
+     * Sets the number of fences to place.
+     *
+     * @param numFences the number of fences
+     * @return this config
+     */
+    public WorldConfig setNumFences(int numFences){
+        if(numFences < 0){
+            throw new IllegalArgumentException("numFences must not be negative: " + numFences);
+        }
+        this.numFences = numFences;
+        return this;
+    }
+
+    /**
+     * Returns the number of threads a tick runs on.
+     *
+     * @return the number of threads
+     */
+    public int getThreads(){
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads a tick runs on. With more than one thread the World uses the
+     * parallel tick, see ParallelTick and setParallel.
+     *
+     * @param threads the number of threads
+     * @return this config
+     */
+    public WorldConfig setThreads(int threads){
+        if(threads <= 0){
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Returns the size of the tiles the parallel tick cuts the grid into.
+     *
+     * @return the tile size in cells
+     */
+    public int getTileSize(){
+        return tileSize;
+    }
+
+    /**
+     * Sets the size of the tiles the parallel tick cuts the grid into.
+     *
+     * @param tileSize the tile size in cells
+     * @return this config
+     */
+    public WorldConfig setTileSize(int tileSize){
+        if(tileSize <= 0){
+            throw new IllegalArgumentException("tileSize must be positive: " + tileSize);
+        }
+        this.tileSize = tileSize;
+        return this;
+    }
+
+    /**
+     * Checks if the World uses the parallel tick, see ParallelTick. It does if it was asked to or if it
+     * runs on more than one thread.
+     *
+     * @return true for the parallel tick, false for the classic one-by-one tick
+     */
+    public boolean isParallel(){
+        return parallel || threads > 1;
+    }
+
+    /**
+     * Makes the World use the parallel tick even on a single thread. The parallel tick gives the same result
+     * on any number of threads, so a run on one thread can be compared with a run on many.
+     *
+     * @param parallel true for the parallel tick
+     * @return this config
+     */
+    public WorldConfig setParallel(boolean parallel){
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Checks if hungry animals find their food through a FoodField.
+     *
+     * @return true if the World keeps food fields
+     */
+    public boolean isFoodFields(){
+        return foodFields;
+    }
+
+    /**
+     * Makes the World keep a FoodField for every species, so hungry animals walk around fences to the
+     * nearest food they can reach. Without them, an animal heads straight for the nearest food and wanders
+     * off if a fence is in the way, like it always did. Food that moves a lot, like sheep for the wolves,
+     * makes its field start over about once a tick, which costs a walk over the whole World.
+     *
+     * @param foodFields true to keep food fields
+     * @return this config
+     */
+    public WorldConfig setFoodFields(boolean foodFields){
+        this.foodFields = foodFields;
+        return this;
+    }
+
+    /**
+     * Checks if the per-cell grids of the World live outside of the heap.
+     *
+     * @return true for grids outside of the heap
+     */
+    public boolean isOffHeap(){
+        return offHeap;
+    }
+
+    /**
+     * Keeps the grids the World has one value per cell in (fences, occupancy, grass and the cell lists) outside of
+     * the heap, so a huge World doesn't need a huge heap and the garbage collector never copies them. The
+     * cell lists then hold at most 512 million cells, see GridBuffers.
+     *
+     * @param offHeap true for grids outside of the heap
+     * @return this config
+     */
+    public WorldConfig setOffHeap(boolean offHeap){
+        this.offHeap = offHeap;
+        return this;
+    }
+
+    /**
+     * Returns the file the fences are mapped from.
+     *
+     * @return the TerrainFile, null if the fences are placed at random
+     */
+    public Path getTerrain(){
+        return terrain;
+    }
+
+    /**
+     * Maps the fences from a TerrainFile instead of placing them at random, so a big map starts at once and
+     * the parts nobody walks on are only read from disk when they are needed. The file must have the rows
+     * and cols of this config. A checkpoint saves the fences, not the file, so a World loaded from one
+     * doesn't need it.
+     *
+     * @param terrain the file, null to place the fences at random
+     * @return this config
+     */
+    public WorldConfig setTerrain(Path terrain){
+        this.terrain = terrain;
+        return this;
+    }
+
+    /**
+     * Returns the health a wolf is born with.
+     *
+     * @return the health
+     */
+    public int getWolfHealth(){
+        return wolfHealth;
+    }
+
+    /**
+     * Sets the health a wolf is born with.
+     *
+     * @param wolfHealth the health
+     * @return this config
+     */
+    public WorldConfig setWolfHealth(int wolfHealth){
+        if(wolfHealth <= 0){
+            throw new IllegalArgumentException("wolfHealth must be positive: " + wolfHealth);
+        }
+        this.wolfHealth = wolfHealth;
+        return this;
+    }
+
+    /**
+     * Returns the health a sheep is born with.
+     *
+     * @return the health
+     */
+    public int getSheepHealth(){
+        return sheepHealth;
+    }
+
+    /**
+     * Sets the health a sheep is born with.
+     *
+     * @param sheepHealth the health
+     * @return this config
+     */
+    public WorldConfig setSheepHealth(int sheepHealth){
+        if(sheepHealth <= 0){
+            throw new IllegalArgumentException("sheepHealth must be positive: " + sheepHealth);
+        }
+        this.sheepHealth = sheepHealth;
+        return this;
+    }
+
+    /**
+     * Returns the health grass has, a sheep that eats it gets that much.
+     *
+     * @return the health
+     */
+    public int getGrassHealth(){
+        return grassHealth;
+    }
+
+    /**
+     * Sets the health grass has, a sheep that eats it gets that much.
+     *
+     * @param grassHealth the health
+     * @return this config
+     */
+    public WorldConfig setGrassHealth(int grassHealth){
+        if(grassHealth < 0){
+            throw new IllegalArgumentException("grassHealth must not be negative: " + grassHealth);
+        }
+        this.grassHealth = grassHealth;
+        return this;
+    }
+
+    /**
+     * Returns the health an animal loses when it wanders, or when it loses a cell to another one in the parallel tick.
+     *
+     * @return the health
+     */
+    public int getWanderCost(){
+        return wanderCost;
+    }
+
+    /**
+     * Sets the health an animal loses when it wanders, or when it loses a cell to another one in the parallel tick.
+     *
+     * @param wanderCost the health
+     * @return this config
+     */
+    public WorldConfig setWanderCost(int wanderCost){
+        if(wanderCost < 0){
+            throw new IllegalArgumentException("wanderCost must not be negative: " + wanderCost);
+        }
+        this.wanderCost = wanderCost;
+        return this;
+    }
+
+    /**
+     * Returns the health an animal loses for a step towards food.
+     *
+     * @return the health
+     */
+    public int getSeekCost(){
+        return seekCost;
+    }
+
+    /**
+     * Sets the health an animal loses for a step towards food.
+     *
+     * @param seekCost the health
+     * @return this config
+     */
+    public WorldConfig setSeekCost(int seekCost){
+        if(seekCost < 0){
+            throw new IllegalArgumentException("seekCost must not be negative: " + seekCost);
+        }
+        this.seekCost = seekCost;
+        return this;
+    }
+
+    /**
+     * Returns the health an animal needs more of to wander instead of seeking food.
+     *
+     * @return the health
+     */
+    public int getHealthyAbove(){
+        return healthyAbove;
+    }
+
+    /**
+     * Sets the health an animal needs more of to wander instead of seeking food.
+     *
+     * @param healthyAbove the health
+     * @return this config
+     */
+    public WorldConfig setHealthyAbove(int healthyAbove){
+        if(healthyAbove < 0){
+            throw new IllegalArgumentException("healthyAbove must not be negative: " + healthyAbove);
+        }
+        this.healthyAbove = healthyAbove;
+        return this;
+    }
+
+    /**
+     * Returns the age from which an animal breeds.
+     *
+     * @return the age
+     */
+    public int getAdultAge(){
+        return adultAge;
+    }
+
+    /**
+     * Sets the age from which an animal breeds.
+     *
+     * @param adultAge the age
+     * @return this config
+     */
+    public WorldConfig setAdultAge(int adultAge){
+        if(adultAge < 0){
+            throw new IllegalArgumentException("adultAge must not be negative: " + adultAge);
+        }
+        this.adultAge = adultAge;
+        return this;
+    }
+
+    /**
+     * Returns the oldest an animal can get, it dies of old age after that.
+     *
+     * @return the age
+     */
+    public int getMaxAge(){
+        return maxAge;
+    }
+
+    /**
+     * Sets the oldest an animal can get, it dies of old age after that.
+     *
+     * @param maxAge the age
+     * @return this config
+     */
+    public WorldConfig setMaxAge(int maxAge){
+        if(maxAge < 0){
+            throw new IllegalArgumentException("maxAge must not be negative: " + maxAge);
+        }
+        this.maxAge = maxAge;
+        return this;
+    }
+
+    /**
+     * Returns the seed of all random numbers in the World.
+     *
+     * @return the seed
+     */
+    public long getSeed(){
+        return seed;
+    }
+
+    /**
+     * Sets the seed of all random numbers in the World. If it is not set, every config gets its own seed,
+     * so runs differ unless they are given the same one.
+     *
+     * @param seed the seed
+     * @return this config
+     */
+    public WorldConfig setSeed(long seed){
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Returns the width of the whole World on screen.
+     *
+     * @return the width in pixels
+     */
+    public int getWidth(){
+        return rows * cellSize;
+    }
+
+    /**
+     * Returns the height of the whole World on screen.
+     *
+     * @return the height in pixels
+     */
+    public int getHeight(){
+        return cols * cellSize;
+    }
+
+    /**
+     * Returns the number of cells in the World.
+     *
+     * @return rows * cols
+     */
+    public long getCellCount(){
+        return (long) rows * cols;
+    }
+}
@@ -0,0 +1,55 @@
+package simulation;
+
+/**
+ * Something that wants to know what happens in a World, for example the JavaFX view.
+ *
+ * The World works fine without any listener, this is what lets it run headless.
+ *
+ * @author Layton Zhou
+ */
+public interface WorldListener {
+
+    /**
+     * Called when a new Entity has been added to the World.
+     *
+     * @param entity the new Entity
+     */
+    void entityAdded(Entity entity);
+
+    /**
+     * Called when an Entity has been removed from the World.
+     *
+     * @param entity the removed Entity, its slot stays valid until the end of the tick
+     * @param cause why it was removed
+     */
+    void entityRemoved(Entity entity, DeathCause cause);
+
+    /**
+     * Called when an Entity ate another one, right before the food is removed.
+     *
+     * @param eater the Entity that ate
+     * @param food the Entity that was eaten
+     */
+    void entityAte(Entity eater, Entity food);
+
+    /**
+     * Called when an Entity has moved.
+     *
+     * @param entity the Entity that moved, already at its new location
+     * @param fromX the x-coordinate it came from
+     * @param fromY the y-coordinate it came from
+     */
+    void entityMoved(Entity entity, int fromX, int fromY);
+
+    /**
+     * Called when something about an Entity changed that might change how it looks, e.g. a baby grew up.
+     *
+     * @param entity the Entity that changed
+     */
+    void entityChanged(Entity entity);
+
+    /**
+     * Called once the World has finished a call to act.
+     */
+    void tickFinished();
+}
@@ -0,0 +1,162 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * What the World looked like at the end of a tick, as far as drawing it is concerned: where every Entity
+ * of every species is, where it came from in that tick and if it is an adult.
+ *
+ * The TickScheduler fills snapshots on the simulation thread and hands finished ones to the view, so the
+ * view never looks at the World while it is changing. Snapshots are reused, filling one only allocates when
+ * the population outgrew it.
+ *
+ * @author Layton Zhou
+ */
+public class WorldSnapshot {
+
+    // the tick the snapshot was taken after
+    private long tick;
+    // when it was taken, System.nanoTime
+    private long time;
+
+    // per species, per Entity in member list order
+    private final int[] count = new int[EntityStore.SPECIES_COUNT];
+    private final int[][] x = new int[EntityStore.SPECIES_COUNT][16];
+    private final int[][] y = new int[EntityStore.SPECIES_COUNT][16];
+    private final int[][] fromX = new int[EntityStore.SPECIES_COUNT][16];
+    private final int[][] fromY = new int[EntityStore.SPECIES_COUNT][16];
+    private final boolean[][] adult = new boolean[EntityStore.SPECIES_COUNT][16];
+
+    /**
+     * Copies the living entities of a World. Must run on the thread that runs the World.
+     *
+     * @param world the World
+     * @param moves where the entities that moved in the last tick came from
+     */
+    void capture(World world, TickScheduler moves){
+        EntityStore store = world.getStore();
+        tick = world.getTick();
+        time = System.nanoTime();
+        for(byte kind = 0; kind < EntityStore.SPECIES_COUNT; kind++){
+            int n = 0;
+            int members = store.getMemberCount(kind);
+            ensureCapacity(kind, members);
+            for(int i = 0; i < members; i++){
+                int slot = store.getMember(kind, i);
+                if(!store.isLiving(slot)){
+                    continue;
+                }
+                x[kind][n] = store.getX(slot);
+                y[kind][n] = store.getY(slot);
+                if(moves.movedIn(slot, tick - 1)){
+                    fromX[kind][n] = moves.getFromX(slot);
+                    fromY[kind][n] = moves.getFromY(slot);
+                }else{
+                    fromX[kind][n] = x[kind][n];
+                    fromY[kind][n] = y[kind][n];
+                }
+                Entity entity = store.getEntity(slot);
+                adult[kind][n] = entity instanceof Animal && ((Animal) entity).isAdult();
+                n++;
+            }
+            count[kind] = n;
+        }
+    }
+
+    /**
+     * Returns the number of ticks that had finished when the snapshot was taken.
+     *
+     * @return the tick number
+     */
+    public long getTick(){
+        return tick;
+    }
+
+    /**
+     * Returns when the snapshot was taken.
+     *
+     * @return the time in nanoseconds, from System.nanoTime
+     */
+    public long getTime(){
+        return time;
+    }
+
+    /**
+     * Returns the number of living entities of a species.
+     *
+     * @param kind the species
+     * @return the number of entities
+     */
+    public int getCount(byte kind){
+        return count[kind];
+    }
+
+    /**
+     * Returns the x-coordinate of an Entity.
+     *
+     * @param kind the species
+     * @param i the index of the Entity, from 0 to getCount(kind) - 1
+     * @return the x-coordinate
+     */
+    public int getX(byte kind, int i){
+        return x[kind][i];
+    }
+
+    /**
+     * Returns the y-coordinate of an Entity.
+     *
+     * @param kind the species
+     * @param i the index of the Entity
+     * @return the y-coordinate
+     */
+    public int getY(byte kind, int i){
+        return y[kind][i];
+    }
+
+    /**
+     * Returns the x-coordinate an Entity had before the tick, the same as getX if it didn't move.
+     *
+     * @param kind the species
+     * @param i the index of the Entity
+     * @return the x-coordinate it came from
+     */
+    public int getFromX(byte kind, int i){
+        return fromX[kind][i];
+    }
+
+    /**
+     * Returns the y-coordinate an Entity had before the tick, the same as getY if it didn't move.
+     *
+     * @param kind the species
+     * @param i the index of the Entity
+     * @return the y-coordinate it came from
+     */
+    public int getFromY(byte kind, int i){
+        return fromY[kind][i];
+    }
+
+    /**
+     * Checks if an Entity is an adult animal.
+     *
+     * @param kind the species
+     * @param i the index of the Entity
+     * @return true for adult animals, false for young ones and grass
+     */
+    public boolean isAdult(byte kind, int i){
+        return adult[kind][i];
+    }
+
+    /**
+     * Makes room for n entities of a species.
+     */
+    private void ensureCapacity(byte kind, int n){
+        if(x[kind].length < n){
+            int capacity = Math.max(n, x[kind].length * 2);
+            x[kind] = Arrays.copyOf(x[kind], capacity);
+            y[kind] = Arrays.copyOf(y[kind], capacity);
+            fromX[kind] = Arrays.copyOf(fromX[kind], capacity);
+            fromY[kind] = Arrays.copyOf(fromY[kind], capacity);
+            adult[kind] = Arrays.copyOf(adult[kind], capacity);
+        }
+    }
+}
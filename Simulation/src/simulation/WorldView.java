@@ -0,0 +1,432 @@
+package simulation;
+
+import javafx.scene.Group;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+
+/**
+ * The JavaFX view of a World. It draws the World onto two canvases instead of keeping a node per Entity:
+ * <ul>
+ *     <li>the background, the ground and the fences, drawn again only when the viewport moves</li>
+ *     <li>the entities, drawn again every frame from the latest snapshot of the TickScheduler, grass first,
+ *     then sheep, then wolves, so wolves are always on top without reordering anything</li>
+ * </ul>
+ * Drawing happens when the Simulator calls draw, once per frame, not when the World changes. The World runs
+ * on the scheduler thread, the view only ever looks at finished snapshots. Animals that moved in the last tick
+ * slide from where they were to where they are, over half a second or one tick, whichever is shorter.
+ *
+ * The canvases are no bigger than MAX_VIEW pixels and show a viewport of the World: drag with the mouse to
+ * pan, scroll to zoom. Only what is inside the viewport is drawn. How it is drawn depends on the zoom:
+ * <ul>
+ *     <li>cells of at least MIN_IMAGE_CELL pixels: every Entity is an image</li>
+ *     <li>smaller cells: every cell becomes one pixel of an image in the colour of the top Entity, and that
+ *     image is drawn scaled up in one go</li>
+ *     <li>cells smaller than a pixel: every pixel stands for a block of cells and shows how many wolves
+ *     (red), grass (green) and sheep (blue) the block holds, as a heatmap</li>
+ * </ul>
+ *
+ * The World doesn't need a view to run, this is only used by the Simulator.
+ *
+ * @author Layton Zhou
+ */
+public class WorldView {
+
+    private static final Image fenceImage = new Image("images/fence.png");
+    private static final Image grassImage = new Image("images/grass.png");
+    private static final Image sheepImage = new Image("images/sheep.png");
+    private static final Image baby_sheepImage = new Image("images/baby_sheep (Custom).png");
+    private static final Image wolfImage = new Image("images/wolf (Custom).png");
+    private static final Image baby_wolfImage = new Image("images/baby_wolf (Custom).png");
+
+    //the largest the canvases get, in pixels
+    private static final int MAX_VIEW = 1024;
+    //cells smaller than this are drawn as coloured pixels instead of images
+    private static final int MIN_IMAGE_CELL = 8;
+    //the biggest a cell gets when zooming in, in pixels
+    private static final double MAX_ZOOM = 128;
+    //how long an animal takes to slide to its new cell
+    private static final long MOVE_NANOS = 500_000_000L;
+
+    //colours of the pixels when cells are small, ARGB
+    private static final int GRASS_PIXEL = 0xFF9ACD32;
+    private static final int SHEEP_PIXEL = 0xFFFFFFFF;
+    private static final int WOLF_PIXEL = 0xFF303030;
+    private static final int FENCE_PIXEL = 0xFF8B4513;
+    private static final Color GROUND_COLOR = Color.GREEN;
+
+    //the species in the order they are drawn, the last one ends up on top
+    private static final byte[] LAYERS = {EntityStore.GRASS, EntityStore.SHEEP, EntityStore.WOLF};
+
+    private final World world;
+    private final TickScheduler scheduler;
+    private final Group root = new Group();
+    //size of the canvases
+    private final int width;
+    private final int height;
+
+    //the entities are drawn on this one, the ground and the fences on the one below it
+    private final GraphicsContext entities;
+    private final GraphicsContext background;
+
+    //the viewport: the cell coordinates of the top left corner, and the size of a cell in pixels
+    private double originX;
+    private double originY;
+    private double zoom;
+    //true if the viewport moved since the background was drawn
+    private boolean backgroundDirty = true;
+    //where the mouse was when the last drag event came in
+    private double dragX;
+    private double dragY;
+
+    //one pixel per cell or per block of cells, reused from frame to frame. A canvas only reads an image when
+    //it renders, so the background has its own.
+    private WritableImage blockImage = new WritableImage(1, 1);
+    private WritableImage groundImage = new WritableImage(1, 1);
+    private int[] blockPixels = new int[0];
+    //the number of entities of every species in every block
+    private final int[][] blockCounts = new int[EntityStore.SPECIES_COUNT][0];
+
+    //the tick of the snapshot drawn last
+    private long shownTick;
+
+    /**
+     * Creates the view of the given World.
+     *
+     * @param world the World to show
+     * @param scheduler the scheduler that runs the World and takes its snapshots
+     */
+    public WorldView(World world, TickScheduler scheduler){
+        this.world = world;
+        this.scheduler = scheduler;
+        this.zoom = world.getConfig().getCellSize();
+        this.width = Math.min(world.getConfig().getWidth(), MAX_VIEW);
+        this.height = Math.min(world.getConfig().getHeight(), MAX_VIEW);
+
+        Canvas back = new Canvas(width, height);
+        Canvas front = new Canvas(width, height);
+        root.getChildren().addAll(back, front);
+        background = back.getGraphicsContext2D();
+        background.setImageSmoothing(false);
+        entities = front.getGraphicsContext2D();
+        entities.setImageSmoothing(false);
+
+        root.setOnMousePressed(event -> {
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        root.setOnMouseDragged(event -> {
+            pan((dragX - event.getX()) / zoom, (dragY - event.getY()) / zoom);
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        root.setOnScroll(event -> zoomAt(Math.pow(1.1, event.getDeltaY() / 40), event.getX(), event.getY()));
+    }
+
+    /**
+     * Returns the container for all visuals of the World.
+     *
+     * @return the root node
+     */
+    public Group getRoot(){
+        return root;
+    }
+
+    /**
+     * Returns the width of the view.
+     *
+     * @return the width in pixels
+     */
+    public int getWidth(){
+        return width;
+    }
+
+    /**
+     * Returns the height of the view.
+     *
+     * @return the height in pixels
+     */
+    public int getHeight(){
+        return height;
+    }
+
+    /**
+     * Returns the tick the view showed in its last frame.
+     *
+     * @return the number of ticks that had finished in the drawn state
+     */
+    public long getShownTick(){
+        return shownTick;
+    }
+
+    /**
+     * Returns the World this view shows.
+     *
+     * @return the World
+     */
+    public World getWorld(){
+        return world;
+    }
+
+    /**
+     * Moves the viewport.
+     *
+     * @param dx the number of cells to move right
+     * @param dy the number of cells to move down
+     */
+    public void pan(double dx, double dy){
+        originX += dx;
+        originY += dy;
+        clampViewport();
+    }
+
+    /**
+     * Zooms in or out, keeping the cell under the given point where it is.
+     *
+     * @param factor how much bigger cells get, below 1 zooms out
+     * @param px the x-coordinate of the point on screen
+     * @param py the y-coordinate of the point on screen
+     */
+    public void zoomAt(double factor, double px, double py){
+        // small enough to see the whole World, but not smaller
+        double minZoom = Math.min(1.0, Math.min((double) width / world.getRows(), (double) height / world.getCols()));
+        double newZoom = Math.max(minZoom, Math.min(MAX_ZOOM, zoom * factor));
+        originX += px / zoom - px / newZoom;
+        originY += py / zoom - py / newZoom;
+        zoom = newZoom;
+        clampViewport();
+    }
+
+    /**
+     * Keeps the viewport inside the World, and marks the background for drawing again.
+     */
+    private void clampViewport(){
+        originX = Math.max(0, Math.min(originX, world.getRows() - width / zoom));
+        originY = Math.max(0, Math.min(originY, world.getCols() - height / zoom));
+        backgroundDirty = true;
+    }
+
+    /**
+     * Draws the entities of the latest snapshot. Called once per frame.
+     *
+     * @param now the time of the frame in nanoseconds, as given to an AnimationTimer
+     */
+    public void draw(long now){
+        WorldSnapshot snapshot = scheduler.acquireSnapshot();
+        shownTick = snapshot.getTick();
+        if(backgroundDirty){
+            drawBackground();
+            backgroundDirty = false;
+        }
+        entities.clearRect(0, 0, width, height);
+        if(zoom < MIN_IMAGE_CELL){
+            drawBlocks(snapshot);
+        }else{
+            double rate = scheduler.getTickRate();
+            //at fast-forward there is no time to slide
+            long moveTime = rate > 0 ? Math.min(MOVE_NANOS, (long) (1e9 / rate)) : 0;
+            double progress = moveTime > 0 ? Math.min(1.0, (now - snapshot.getTime()) / (double) moveTime) : 1.0;
+            drawImages(snapshot, Math.max(0.0, progress));
+        }
+    }
+
+    /**
+     * Draws every Entity in the viewport as an image, layer by layer.
+     *
+     * @param snapshot the state to draw
+     * @param progress how far the animals of the last tick are on their way, from 0 to 1
+     */
+    private void drawImages(WorldSnapshot snapshot, double progress){
+        // an Entity that is sliding in from just outside still shows
+        double minX = originX - 1, maxX = originX + width / zoom;
+        double minY = originY - 1, maxY = originY + height / zoom;
+        for(byte kind : LAYERS){
+            for(int i = 0; i < snapshot.getCount(kind); i++){
+                double fromX = snapshot.getFromX(kind, i);
+                double fromY = snapshot.getFromY(kind, i);
+                double x = fromX + (snapshot.getX(kind, i) - fromX) * progress;
+                double y = fromY + (snapshot.getY(kind, i) - fromY) * progress;
+                if(x <= minX || x >= maxX || y <= minY || y >= maxY){
+                    continue;
+                }
+                entities.drawImage(imageOf(kind, snapshot.isAdult(kind, i)),
+                        (x - originX) * zoom, (y - originY) * zoom, zoom, zoom);
+            }
+        }
+    }
+
+    /**
+     * Draws the viewport as one pixel per block of cells, scaled up. A block is a single cell if cells are at
+     * least a pixel big, then the pixel has the colour of the top Entity. Otherwise the pixel shows how many
+     * entities of every species the block holds.
+     *
+     * @param snapshot the state to draw
+     */
+    private void drawBlocks(WorldSnapshot snapshot){
+        int block = blockSize();
+        int x0 = (int) originX, y0 = (int) originY;
+        int bw = blocksAcross(x0, world.getRows(), width, block);
+        int bh = blocksAcross(y0, world.getCols(), height, block);
+        int n = bw * bh;
+        prepareBlocks(bw, bh);
+        for(byte kind : LAYERS){
+            int[] counts = blockCounts[kind];
+            Arrays.fill(counts, 0, n, 0);
+            for(int i = 0; i < snapshot.getCount(kind); i++){
+                int dx = snapshot.getX(kind, i) - x0;
+                int dy = snapshot.getY(kind, i) - y0;
+                if(dx < 0 || dy < 0 || dx >= bw * block || dy >= bh * block){
+                    continue;
+                }
+                counts[dy / block * bw + dx / block]++;
+            }
+        }
+        int[] wolves = blockCounts[EntityStore.WOLF];
+        int[] sheep = blockCounts[EntityStore.SHEEP];
+        int[] grass = blockCounts[EntityStore.GRASS];
+        double cellsPerBlock = (double) block * block;
+        for(int i = 0; i < n; i++){
+            if(block == 1){
+                blockPixels[i] = wolves[i] > 0 ? WOLF_PIXEL : sheep[i] > 0 ? SHEEP_PIXEL : grass[i] > 0 ? GRASS_PIXEL : 0;
+            }else if(wolves[i] + sheep[i] + grass[i] == 0){
+                blockPixels[i] = 0;
+            }else{
+                blockPixels[i] = 0xFF000000
+                        | heat(wolves[i], cellsPerBlock) << 16
+                        | heat(grass[i], cellsPerBlock) << 8
+                        | heat(sheep[i], cellsPerBlock);
+            }
+        }
+        blockImage = fit(blockImage, bw, bh);
+        drawBlockImage(entities, blockImage, x0, y0, bw, bh, block);
+    }
+
+    /**
+     * Draws the ground and the fences inside the viewport.
+     */
+    private void drawBackground(){
+        background.setFill(GROUND_COLOR);
+        background.fillRect(0, 0, width, height);
+        int x0 = (int) originX, y0 = (int) originY;
+        if(zoom >= MIN_IMAGE_CELL){
+            int x1 = Math.min(world.getRows(), (int) Math.ceil(originX + width / zoom));
+            int y1 = Math.min(world.getCols(), (int) Math.ceil(originY + height / zoom));
+            for(int i = x0; i < x1; i++){
+                for(int j = y0; j < y1; j++){
+                    if(world.isFence(i, j)){
+                        background.drawImage(fenceImage, (i - originX) * zoom, (j - originY) * zoom, zoom, zoom);
+                    }
+                }
+            }
+            return;
+        }
+        // a block is drawn as a fence if at least half of it is fence
+        int block = blockSize();
+        int bw = blocksAcross(x0, world.getRows(), width, block);
+        int bh = blocksAcross(y0, world.getCols(), height, block);
+        prepareBlocks(bw, bh);
+        int[] fences = blockCounts[EntityStore.WOLF];
+        Arrays.fill(fences, 0, bw * bh, 0);
+        int x1 = Math.min(world.getRows(), x0 + bw * block);
+        int y1 = Math.min(world.getCols(), y0 + bh * block);
+        for(int i = x0; i < x1; i++){
+            for(int j = y0; j < y1; j++){
+                if(world.isFence(i, j)){
+                    fences[(j - y0) / block * bw + (i - x0) / block]++;
+                }
+            }
+        }
+        int half = (block * block + 1) / 2;
+        for(int i = 0; i < bw * bh; i++){
+            blockPixels[i] = fences[i] >= half ? FENCE_PIXEL : 0;
+        }
+        groundImage = fit(groundImage, bw, bh);
+        drawBlockImage(background, groundImage, x0, y0, bw, bh, block);
+    }
+
+    /**
+     * Returns the number of cells across a block at the current zoom, so a block is about a pixel.
+     */
+    private int blockSize(){
+        return zoom >= 1 ? 1 : (int) Math.ceil(1 / zoom);
+    }
+
+    /**
+     * Returns the number of blocks needed to cover the viewport in one direction.
+     *
+     * @param first the first cell in the viewport
+     * @param cells the number of cells of the World in that direction
+     * @param pixels the size of the view in that direction
+     * @param block the number of cells across a block
+     * @return the number of blocks, at least 1
+     */
+    private int blocksAcross(int first, int cells, int pixels, int block){
+        int last = Math.min(cells, (int) Math.ceil(first + 1 + pixels / zoom));
+        return Math.max(1, (last - first + block - 1) / block);
+    }
+
+    /**
+     * Makes room for bw * bh blocks.
+     */
+    private void prepareBlocks(int bw, int bh){
+        int n = bw * bh;
+        if(blockPixels.length < n){
+            blockPixels = new int[n];
+            for(int kind = 0; kind < EntityStore.SPECIES_COUNT; kind++){
+                blockCounts[kind] = new int[n];
+            }
+        }
+    }
+
+    /**
+     * Returns the given image if it holds bw * bh pixels, otherwise a bigger one.
+     */
+    private static WritableImage fit(WritableImage image, int bw, int bh){
+        if(image.getWidth() >= bw && image.getHeight() >= bh){
+            return image;
+        }
+        return new WritableImage(Math.max(bw, (int) image.getWidth()), Math.max(bh, (int) image.getHeight()));
+    }
+
+    /**
+     * Uploads the block pixels into an image and draws them scaled up to where the blocks are on screen.
+     */
+    private void drawBlockImage(GraphicsContext g, WritableImage image, int x0, int y0, int bw, int bh, int block){
+        image.getPixelWriter().setPixels(0, 0, bw, bh, PixelFormat.getIntArgbInstance(), blockPixels, 0, bw);
+        double size = block * zoom;
+        g.drawImage(image, 0, 0, bw, bh, (x0 - originX) * zoom, (y0 - originY) * zoom, bw * size, bh * size);
+    }
+
+    /**
+     * Turns the number of entities in a block into a colour channel. The square root makes sparse species visible.
+     *
+     * @param count the number of entities
+     * @param cells the number of cells in the block
+     * @return the channel, from 0 to 255
+     */
+    private static int heat(int count, double cells){
+        return (int) (Math.sqrt(Math.min(1.0, count / cells)) * 255);
+    }
+
+    /**
+     * Picks the image for an Entity. Animals use different images based on their age.
+     *
+     * @param kind the species of the Entity
+     * @param adult true if the Entity is an adult animal
+     * @return the image of the Entity
+     */
+    private static Image imageOf(byte kind, boolean adult){
+        if(kind == EntityStore.WOLF){
+            return adult ? wolfImage : baby_wolfImage;
+        }
+        if(kind == EntityStore.SHEEP){
+            return adult ? sheepImage : baby_sheepImage;
+        }
+        return grassImage;
+    }
+}
@@ -0,0 +1,158 @@
+package simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks the repaired distances of the food fields against a breadth-first search from scratch while fences
+ * and food come and go at random, and that a run with food fields doesn't depend on the number of threads.
+ *
+ * @author Layton Zhou
+ */
+class FoodFieldTest {
+
+    private static final int ROWS = 60;
+    private static final int COLS = 70;
+    private static final int TICKS = 60;
+
+    /**
+     * Runs a World with food fields, toggles fences and food between the ticks and compares the fields of
+     * every species to a fresh search every few ticks. Every tenth tick changes so much that the fields are
+     * built again instead of repaired, so both ways are checked.
+     *
+     * @param seed the seed of the World and of the changes
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {1, 2, 3, 4})
+    void matchesBreadthFirstSearch(long seed){
+        try(World world = new World(WorldConfig.parse("rows=" + ROWS, "cols=" + COLS, "fences=900",
+                "foodFields=true", "seed=" + seed))){
+            world.addRandomEntities(10, SpeciesDescriptor.WOLF);
+            world.addRandomEntities(150, SpeciesDescriptor.SHEEP);
+            world.addRandomEntities(600, SpeciesDescriptor.GRASS);
+            Randomizer random = new Randomizer(seed, 99);
+            for(int t = 0; t < TICKS; t++){
+                world.act();
+                toggleFences(world, random, t % 10 == 9 ? 600 : 20);
+                toggleFood(world, random, 10);
+                if(t % 3 == 0){
+                    checkFields(world);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the same World with food fields on 1, 2 and 4 threads, they have to agree after every tick.
+     */
+    @Test
+    void sameOnAnyNumberOfThreads(){
+        long[] expected = fingerprints(1);
+        assertEquals(Arrays.toString(expected), Arrays.toString(fingerprints(2)), "2 threads");
+        assertEquals(Arrays.toString(expected), Arrays.toString(fingerprints(4)), "4 threads");
+    }
+
+    /**
+     * Returns the fingerprint of a World with food fields after every tick.
+     */
+    private static long[] fingerprints(int threads){
+        try(World world = new World(WorldConfig.parse("rows=" + ROWS, "cols=" + COLS, "fences=900",
+                "foodFields=true", "parallel=true", "threads=" + threads, "tileSize=16", "seed=5"))){
+            world.addRandomEntities(10, SpeciesDescriptor.WOLF);
+            world.addRandomEntities(150, SpeciesDescriptor.SHEEP);
+            world.addRandomEntities(600, SpeciesDescriptor.GRASS);
+            long[] fingerprints = new long[TICKS];
+            for(int t = 0; t < TICKS; t++){
+                world.act();
+                fingerprints[t] = world.fingerprint();
+            }
+            return fingerprints;
+        }
+    }
+
+    /**
+     * Puts up fences on empty cells and takes down fences, at random.
+     */
+    private static void toggleFences(World world, Randomizer random, int n){
+        for(int i = 0; i < n; i++){
+            int x = random.nextInt(ROWS), y = random.nextInt(COLS);
+            if(world.isFence(x, y)){
+                world.setFence(x, y, false);
+            }else if(world.getEntitiesAt(x, y).isEmpty()){
+                world.setFence(x, y, true);
+            }
+        }
+    }
+
+    /**
+     * Grows grass on empty cells and removes entities, at random.
+     */
+    private static void toggleFood(World world, Randomizer random, int n){
+        for(int i = 0; i < n; i++){
+            int x = random.nextInt(ROWS), y = random.nextInt(COLS);
+            if(world.isFence(x, y)){
+                continue;
+            }
+            if(world.getEntitiesAt(x, y).isEmpty()){
+                SpeciesDescriptor.GRASS.spawn(world, x, y, 10);
+            }else{
+                world.remove(world.getEntitiesAt(x, y).get(0));
+            }
+        }
+    }
+
+    /**
+     * Compares the field of every species to a fresh search, on every cell without a fence.
+     */
+    private static void checkFields(World world){
+        for(byte kind = 0; kind < EntityStore.SPECIES_COUNT; kind++){
+            Class<?> type = SpeciesDescriptor.of(kind).getType();
+            FoodField field = world.getFoodField(type);
+            int[] expected = search(world, kind);
+            for(int cell = 0; cell < expected.length; cell++){
+                if(world.getNavigation().isPassable(cell)){
+                    assertEquals(expected[cell], field.getDistance(cell), type.getSimpleName() + " at cell " + cell
+                            + " after tick " + world.getTick());
+                }
+            }
+        }
+    }
+
+    /**
+     * Works out the distances of a species' field from scratch, by a breadth-first search over the cells
+     * without a fence.
+     */
+    private static int[] search(World world, byte kind){
+        int[] distance = new int[ROWS * COLS];
+        Arrays.fill(distance, FoodField.UNREACHABLE);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        EntityStore store = world.getStore();
+        for(int slot = 0; slot < store.size(); slot++){
+            if(store.isLiving(slot) && store.getSpecies(slot) == kind){
+                int cell = world.toCell(store.getX(slot), store.getY(slot));
+                if(distance[cell] != 0){
+                    distance[cell] = 0;
+                    queue.add(cell);
+                }
+            }
+        }
+        int[][] steps = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+        while(!queue.isEmpty()){
+            int cell = queue.poll();
+            for(int[] step : steps){
+                int x = world.cellX(cell) + step[0], y = world.cellY(cell) + step[1];
+                if(world.isValidLocation(x, y) && distance[world.toCell(x, y)] == FoodField.UNREACHABLE){
+                    distance[world.toCell(x, y)] = distance[cell] + 1;
+                    queue.add(world.toCell(x, y));
+                }
+            }
+        }
+        return distance;
+    }
+}
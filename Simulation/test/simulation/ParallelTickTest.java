@@ -0,0 +1,52 @@
+package simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the parallel tick keeps animals of a species on cells of their own.
+ *
+ * @author Layton Zhou
+ */
+class ParallelTickTest {
+
+    private static final int ROWS = 128;
+    private static final int COLS = 128;
+    private static final int TICKS = 60;
+
+    /**
+     * Runs a crowded World on the parallel tick and looks for a cell with two wolves or two sheep after every
+     * tick. Newborns start on the cell of their parent, so only animals that have acted at least twice count.
+     */
+    @Test
+    void oneAnimalPerCell(){
+        try(World world = new World(WorldConfig.parse("rows=" + ROWS, "cols=" + COLS, "parallel=true",
+                "threads=4", "seed=7"))){
+            world.addRandomEntities(200, SpeciesDescriptor.WOLF);
+            world.addRandomEntities(3000, SpeciesDescriptor.SHEEP);
+            world.addRandomEntities(8000, SpeciesDescriptor.GRASS);
+            for(int t = 0; t < TICKS; t++){
+                world.act();
+                assertEquals(0, crowdedCells(world, EntityStore.WOLF), "wolves after tick " + world.getTick());
+                assertEquals(0, crowdedCells(world, EntityStore.SHEEP), "sheep after tick " + world.getTick());
+            }
+        }
+    }
+
+    /**
+     * Counts the cells with more than one living animal of a species that is at least 2 ticks old.
+     */
+    private static int crowdedCells(World world, byte kind){
+        EntityStore store = world.getStore();
+        int[] count = new int[ROWS * COLS];
+        int crowded = 0;
+        for(int slot = 0; slot < store.size(); slot++){
+            if(store.isLiving(slot) && store.getSpecies(slot) == kind && store.getAge(slot) >= 2
+                    && ++count[world.toCell(store.getX(slot), store.getY(slot))] == 2){
+                crowded++;
+            }
+        }
+        return crowded;
+    }
+}
@@ -0,0 +1,55 @@
+package simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a seeded run can be reproduced, on one thread or many.
+ *
+ * @author Layton Zhou
+ */
+class SeededRunTest {
+
+    private static final int TICKS = 50;
+
+    /**
+     * Runs the classic tick twice with the same seed.
+     */
+    @Test
+    void sameSeedSameRun(){
+        assertEquals(Arrays.toString(fingerprints("seed=11")), Arrays.toString(fingerprints("seed=11")));
+    }
+
+    /**
+     * Runs the parallel tick with the same seed on 1 and on 4 threads.
+     */
+    @Test
+    void sameOnOneAndFourThreads(){
+        assertEquals(Arrays.toString(fingerprints("seed=11", "parallel=true", "threads=1")),
+                Arrays.toString(fingerprints("seed=11", "parallel=true", "threads=4")));
+    }
+
+    /**
+     * Returns the fingerprint of a World after every tick.
+     *
+     * @param settings the settings on top of the size and the fences
+     */
+    private static long[] fingerprints(String... settings){
+        String[] args = Arrays.copyOf(new String[]{"rows=96", "cols=96", "fences=500", "tileSize=16"}, 4 + settings.length);
+        System.arraycopy(settings, 0, args, 4, settings.length);
+        try(World world = new World(WorldConfig.parse(args))){
+            world.addRandomEntities(20, SpeciesDescriptor.WOLF);
+            world.addRandomEntities(400, SpeciesDescriptor.SHEEP);
+            world.addRandomEntities(3000, SpeciesDescriptor.GRASS);
+            long[] fingerprints = new long[TICKS];
+            for(int t = 0; t < TICKS; t++){
+                world.act();
+                fingerprints[t] = world.fingerprint();
+            }
+            return fingerprints;
+        }
+    }
+}
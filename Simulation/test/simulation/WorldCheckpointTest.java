@@ -0,0 +1,64 @@
+package simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks that a World loaded from a checkpoint goes on exactly like the World that was saved: both are run
+ * on side by side and have to agree after every tick.
+ *
+ * @author Layton Zhou
+ */
+class WorldCheckpointTest {
+
+    // the ticks before the save and after it
+    private static final int TICKS_BEFORE = 25;
+    private static final int TICKS_AFTER = 30;
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Saves a World in the middle of a run, loads it and runs both on.
+     *
+     * @param settings WorldConfig keys on top of the common ones, separated by spaces
+     * @throws IOException if the checkpoint can't be written or read
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"", "foodFields=true", "parallel=true threads=3", "foodFields=true parallel=true threads=3",
+            "offHeap=true"})
+    void goesOnLikeTheSavedWorld(String settings) throws IOException {
+        String[] args = ("rows=80 cols=80 fences=300 seed=7 " + settings).trim().split(" ");
+        try(World saved = new World(WorldConfig.parse(args))){
+            saved.addRandomEntities(10, SpeciesDescriptor.WOLF);
+            saved.addRandomEntities(100, SpeciesDescriptor.SHEEP);
+            saved.addRandomEntities(2500, SpeciesDescriptor.GRASS);
+            for(int i = 0; i < TICKS_BEFORE; i++){
+                saved.act();
+            }
+            assertTrue(saved.getStore().getPopulation(EntityStore.SHEEP) > 0, "the sheep died out before the save");
+
+            Path file = dir.resolve("world.checkpoint");
+            WorldCheckpoint.save(saved, file);
+            try(World loaded = WorldCheckpoint.load(file)){
+                assertEquals(saved.getTick(), loaded.getTick());
+                assertEquals(saved.fingerprint(), loaded.fingerprint(),
+                        "differs right after loading");
+                for(int i = 0; i < TICKS_AFTER; i++){
+                    saved.act();
+                    loaded.act();
+                    assertEquals(saved.fingerprint(), loaded.fingerprint(),
+                            "differs at tick " + saved.getTick());
+                }
+                assertEquals(saved.getEntityCount(), loaded.getEntityCount());
+            }
+        }
+    }
+}
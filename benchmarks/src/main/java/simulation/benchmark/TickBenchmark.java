@@ -0,0 +1,157 @@
+package simulation.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import simulation.SpeciesDescriptor;
+import simulation.World;
+import simulation.WorldConfig;
+
+/**
+ * Measures how fast World.act runs, headless, for different world sizes and densities.
+ *
+ * One operation builds a World (not measured) and runs it for a number of ticks. A World left running
+ * on its own soon runs out of animals, so measuring one long run would mostly measure an empty World.
+ * Every operation uses the same seed, so every operation does exactly the same work.
+ *
+ * <ul>
+ *     <li>throughput:ticks is the number of ticks per second</li>
+ *     <li>tickTime:ticks is the ns per tick, tickTime:entityTicks the ns per living Entity per tick, which
+ *     can be compared between world sizes</li>
+ * </ul>
+ * The allocation rate comes from the GC profiler: {@code java -jar benchmarks/target/benchmarks.jar -prof gc},
+ * gc.alloc.rate is in MB/s and gc.alloc.rate.norm in bytes per operation.
+ *
+ * The densities are the share of cells that start with a wolf, a sheep or a grass. With 1 thread the World
+ * uses the classic one-by-one tick unless parallel is set, with more threads it uses the parallel tick, see
+ * ParallelTick. Only compare thread counts on a machine with at least that many cores.
+ *
+ * @author Layton Zhou
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TickBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    @Param({"0.002"})
+    public double wolves;
+
+    @Param({"0.01", "0.05"})
+    public double sheep;
+
+    @Param({"0.05", "0.25"})
+    public double grass;
+
+    @Param({"0.05"})
+    public double fences;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"false"})
+    public boolean parallel;
+
+    @Param({"42"})
+    public long seed;
+
+    @Param({"100"})
+    public int ticks;
+
+    private World world;
+
+    /**
+     * Counts the ticks and the living entities that took part in every tick.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long ticks;
+        public long entityTicks;
+
+        /**
+         * Starts counting from 0 in every iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset(){
+            ticks = 0;
+            entityTicks = 0;
+        }
+    }
+
+    /**
+     * Builds a fresh World for every operation.
+     */
+    @Setup(Level.Invocation)
+    public void createWorld(){
+        long cells = (long) size * size;
+        WorldConfig config = new WorldConfig()
+                .setRows(size)
+                .setCols(size)
+                .setNumFences((int) (cells * fences))
+                .setThreads(threads)
+                .setParallel(parallel)
+                .setSeed(seed);
+        world = new World(config);
+        world.addRandomEntities((int) (cells * wolves), SpeciesDescriptor.WOLF);
+        world.addRandomEntities((int) (cells * sheep), SpeciesDescriptor.SHEEP);
+        world.addRandomEntities((int) (cells * grass), SpeciesDescriptor.GRASS);
+    }
+
+    /**
+     * Closes the World of the operation, so the threads of its parallel tick don't pile up.
+     */
+    @TearDown(Level.Invocation)
+    public void closeWorld(){
+        world.close();
+    }
+
+    /**
+     * Ticks per second.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public World throughput(Counters counters){
+        return run(counters);
+    }
+
+    /**
+     * Time per tick, and per Entity per tick.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public World tickTime(Counters counters){
+        return run(counters);
+    }
+
+    /**
+     * Runs the World for the given number of ticks.
+     */
+    private World run(Counters counters){
+        for(int i = 0; i < ticks; i++){
+            counters.entityTicks += world.getEntityCount();
+            world.act();
+        }
+        counters.ticks += ticks;
+        return world;
+    }
+}